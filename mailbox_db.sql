@@ -5,38 +5,67 @@ USE mailbox_db;
 -- 1. Table des emails
 CREATE TABLE emails (
     id INT AUTO_INCREMENT PRIMARY KEY,
+    compte VARCHAR(100) NOT NULL DEFAULT '',
     expediteur VARCHAR(100) NOT NULL,
     destinataire VARCHAR(100) NOT NULL,
     sujet VARCHAR(255),
-    message TEXT,
+    message LONGTEXT,
     date_envoi DATETIME DEFAULT CURRENT_TIMESTAMP,
-    dossier VARCHAR(20) DEFAULT 'INBOX' 
+    dossier VARCHAR(20) DEFAULT 'INBOX',
+    empreinte CHAR(40),
+    INDEX idx_compte_dossier_date (compte, dossier, date_envoi),
+    UNIQUE KEY uk_compte_empreinte (compte, empreinte)
 );
 
--- 2. Table d'archives
-CREATE TABLE archives (
-    id_archive INT AUTO_INCREMENT PRIMARY KEY,
-    id_original INT,
-    sujet VARCHAR(255),
-    date_suppression DATETIME DEFAULT CURRENT_TIMESTAMP,
-    raison VARCHAR(50) DEFAULT 'Suppression utilisateur'
+-- 2. Table d'archives, partitionnée par mois de suppression.
+--    Les bornes sont calculées à partir de la date d'installation : p_initiale (vide) reçoit
+--    ce qui précède le mois courant, pAAAAMM le mois courant, et p_futur doit rester vide.
+--    L'application (RetentionArchives) crée les mois suivants à l'avance et supprime ceux
+--    dont la durée de conservation est écoulée.
+SET @mois_courant = DATE_FORMAT(CURDATE(), '%Y-%m-01');
+SET @creation_archives = CONCAT(
+    'CREATE TABLE archives (',
+    '    id_archive INT AUTO_INCREMENT,',
+    '    id_original INT,',
+    '    sujet VARCHAR(255),',
+    '    date_suppression DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,',
+    '    raison VARCHAR(50) DEFAULT ''Suppression utilisateur'',',
+    '    PRIMARY KEY (id_archive, date_suppression),',
+    '    INDEX idx_id_original (id_original)',
+    ') PARTITION BY RANGE (TO_DAYS(date_suppression)) (',
+    '    PARTITION p_initiale VALUES LESS THAN (TO_DAYS(''', @mois_courant, ''')),',
+    '    PARTITION p', DATE_FORMAT(@mois_courant, '%Y%m'),
+    ' VALUES LESS THAN (TO_DAYS(''', DATE_ADD(@mois_courant, INTERVAL 1 MONTH), ''')),',
+    '    PARTITION p_futur VALUES LESS THAN MAXVALUE',
+    ')');
+PREPARE creer_archives FROM @creation_archives;
+EXECUTE creer_archives;
+DEALLOCATE PREPARE creer_archives;
+
+-- 3. Points de reprise des imports (mbox / EML)
+CREATE TABLE import_checkpoints (
+    compte VARCHAR(100) NOT NULL,
+    source VARCHAR(255) NOT NULL,
+    position BIGINT NOT NULL DEFAULT 0,
+    date_maj DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (compte, source)
 );
 
--- 3. Trigger 1 : Archivage avant suppression
+-- 4. Trigger 1 : Archivage avant suppression
 CREATE TRIGGER avant_suppression_email
 BEFORE DELETE ON emails
 FOR EACH ROW
 INSERT INTO archives (id_original, sujet)
 VALUES (OLD.id, OLD.sujet);
 
--- 4. Trigger 2 : Tri automatique ENSA (Version simplifiée pour phpMyAdmin)
+-- 5. Trigger 2 : Tri automatique ENSA (Version simplifiée pour phpMyAdmin)
 CREATE TRIGGER tri_automatique_ensa
 BEFORE INSERT ON emails
 FOR EACH ROW
 SET NEW.dossier = IF(NEW.sujet LIKE '%ensa%' OR NEW.expediteur LIKE '%ensa%', 'ENSA', NEW.dossier);
 
--- 5. Données de test
-INSERT INTO emails (expediteur, destinataire, sujet, message, dossier, date_envoi) VALUES 
-('directeur@ensa.ma', 'paul@ensa.ma', 'Confirmation inscription', 'Bienvenue en 4ème année.', 'INBOX', '2025-12-10 09:00:00'),
-('amazon@service.com', 'paul@gmail.com', 'Votre colis', 'Livraison prévue demain.', 'INBOX', '2025-12-14 14:30:00'),
-('paul@gmail.com', 'prof@ensa.ma', 'Rendu du Projet', 'Voici mon code source.', 'OUTBOX', '2025-12-14 23:00:00');
\ No newline at end of file
+-- 6. Données de test
+INSERT INTO emails (compte, expediteur, destinataire, sujet, message, dossier, date_envoi) VALUES 
+('paul@ensa.ma', 'directeur@ensa.ma', 'paul@ensa.ma', 'Confirmation inscription', 'Bienvenue en 4ème année.', 'INBOX', '2025-12-10 09:00:00'),
+('paul@gmail.com', 'amazon@service.com', 'paul@gmail.com', 'Votre colis', 'Livraison prévue demain.', 'INBOX', '2025-12-14 14:30:00'),
+('paul@gmail.com', 'paul@gmail.com', 'prof@ensa.ma', 'Rendu du Projet', 'Voici mon code source.', 'OUTBOX', '2025-12-14 23:00:00');
\ No newline at end of file
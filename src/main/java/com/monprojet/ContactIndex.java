@@ -0,0 +1,396 @@
+package com.monprojet;
+
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index des correspondants utilisé pour l'autocomplétion des adresses.
+ * <p>
+ * Chaque correspondant est accessible par son adresse et par chacun des mots de son nom.
+ * Ces clés sont conservées dans un tableau trié : les clés commençant par un préfixe
+ * forment une plage contiguë, trouvée par deux recherches dichotomiques, puis parcourue
+ * pour garder les meilleurs correspondants. Le classement combine fréquence et récence :
+ * chaque échange ajoute {@code exp(date / ECHELLE_RECENCE)} au score, conservé sous forme
+ * logarithmique pour rester représentable.
+ * </p>
+ * <p>
+ * Chaque compte a son propre répertoire : les correspondants d'un compte ne sont jamais
+ * proposés depuis un autre, et l'adresse du compte lui-même n'y figure pas. Le chargement
+ * initial construit les répertoires sans verrou, puis les installe d'un bloc ; les échanges
+ * enregistrés entre-temps sont mis de côté, puis seuls ceux que la lecture en base n'a pas
+ * déjà comptés sont ajoutés.
+ * </p>
+ */
+public class ContactIndex {
+
+    /**
+     * Nombre maximal de suggestions renvoyées par {@link #rechercher(String, String)}.
+     */
+    public static final int MAX_SUGGESTIONS = 8;
+
+    /**
+     * Durée, en secondes, au bout de laquelle le poids d'un échange est multiplié par e :
+     * un échange récent compte autant que e échanges datant d'un mois plus tôt.
+     */
+    private static final double ECHELLE_RECENCE = 30 * 24 * 3600.0;
+
+    /**
+     * Un correspondant tel que lu en base : son adresse et le résumé de ses échanges.
+     */
+    public static class Correspondant {
+        private final String compte;
+        private final String adresses;
+        private final int echanges;
+        private final Timestamp dernierEchange;
+
+        /**
+         * @param compte         L'adresse du compte auquel appartiennent les e-mails.
+         * @param adresses       Le contenu brut d'une colonne expediteur ou destinataire.
+         * @param echanges       Le nombre d'e-mails du compte où ce contenu apparaît.
+         * @param dernierEchange La date du plus récent de ces e-mails.
+         */
+        public Correspondant(String compte, String adresses, int echanges, Timestamp dernierEchange) {
+            this.compte = compte;
+            this.adresses = adresses;
+            this.echanges = echanges;
+            this.dernierEchange = dernierEchange;
+        }
+    }
+
+    /**
+     * Une clé de recherche et le correspondant auquel elle mène.
+     */
+    private static class Cle {
+        private final String texte;
+        private final int contact;
+
+        Cle(String texte, int contact) {
+            this.texte = texte;
+            this.contact = contact;
+        }
+    }
+
+    private final Map<String, Repertoire> repertoires = new HashMap<>();
+    private List<Runnable> enAttente = new ArrayList<>();
+    private int dernierIdCharge;
+
+    /**
+     * Charge les correspondants présents en base. Les répertoires sont construits hors du
+     * verrou, leurs clés triées une seule fois, puis ils sont installés d'un bloc : la
+     * recherche n'est jamais bloquée par l'analyse des adresses.
+     * <p>
+     * Jusqu'à la fin du chargement, {@link #ajouter(List)} et
+     * {@link #enregistrer(String, String, Timestamp)} mettent les échanges de côté. Seuls les
+     * e-mails enregistrés jusqu'au plus grand identifiant présent au début du chargement sont
+     * lus en base ; les e-mails mis de côté au-delà de cet identifiant sont ensuite ajoutés,
+     * de sorte qu'aucun échange n'est compté deux fois.
+     * </p>
+     *
+     * @param dbService Le service de base de données.
+     */
+    public void charger(DBService dbService) {
+        int dernierId = dbService.getDernierIdEmail();
+        List<Correspondant> correspondants = dbService.getCorrespondants(dernierId);
+
+        Map<String, Repertoire> charges = new HashMap<>();
+        Map<String, List<Cle>> nouvelles = new HashMap<>();
+        for (Correspondant c : correspondants) {
+            charges.computeIfAbsent(c.compte, Repertoire::new)
+                .noter(c.adresses, Math.log(Math.max(1, c.echanges)), c.dernierEchange,
+                       nouvelles.computeIfAbsent(c.compte, compte -> new ArrayList<>()));
+        }
+        for (Map.Entry<String, List<Cle>> entree : nouvelles.entrySet()) {
+            charges.get(entree.getKey()).fusionner(entree.getValue());
+        }
+
+        synchronized (this) {
+            repertoires.putAll(charges);
+            dernierIdCharge = dernierId;
+            List<Runnable> suite = enAttente;
+            enAttente = null;
+            for (Runnable echange : suite) {
+                echange.run();
+            }
+        }
+    }
+
+    /**
+     * Ajoute les expéditeurs et destinataires d'e-mails reçus ou envoyés.
+     * Conçu pour être enregistré comme écouteur du {@link SyncScheduler}, avant l'appel
+     * de {@link #charger(DBService)} : d'ici là, les e-mails sont mis de côté.
+     *
+     * @param emails Les e-mails enregistrés, avec leur identifiant et leur compte.
+     */
+    public synchronized void ajouter(List<Email> emails) {
+        for (Email email : emails) {
+            if (enAttente != null) {
+                enAttente.add(() -> {
+                    if (email.getId() > dernierIdCharge) {
+                        ajouter(email);
+                    }
+                });
+            } else {
+                ajouter(email);
+            }
+        }
+    }
+
+    private void ajouter(Email email) {
+        enregistrer(email.getCompte(), email.getExpediteur(), email.getDate());
+        enregistrer(email.getCompte(), email.getDestinataire(), email.getDate());
+    }
+
+    /**
+     * Enregistre un échange avec une ou plusieurs adresses.
+     *
+     * @param compte   L'adresse du compte qui a reçu ou envoyé l'e-mail.
+     * @param adresses Une liste d'adresses séparées par des virgules, au format RFC 822.
+     * @param date     La date de l'échange, ou {@code null} pour maintenant.
+     */
+    public synchronized void enregistrer(String compte, String adresses, Timestamp date) {
+        if (enAttente != null) {
+            enAttente.add(() -> enregistrer(compte, adresses, date));
+            return;
+        }
+        Repertoire repertoire = repertoires.computeIfAbsent(compte, Repertoire::new);
+        List<Cle> nouvelles = new ArrayList<>();
+        repertoire.noter(adresses, 0, date, nouvelles);
+        for (Cle cle : nouvelles) {
+            repertoire.insererCle(cle.texte, cle.contact);
+        }
+    }
+
+    /**
+     * Recherche les correspondants d'un compte dont l'adresse ou un mot du nom commence
+     * par un préfixe.
+     *
+     * @param compte  L'adresse du compte qui rédige l'e-mail.
+     * @param prefixe Le début saisi, sans distinction de casse.
+     * @return Au plus {@value #MAX_SUGGESTIONS} correspondants, du mieux classé au moins bien classé.
+     */
+    public synchronized List<String> rechercher(String compte, String prefixe) {
+        String p = prefixe.trim().toLowerCase(Locale.ROOT);
+        Repertoire repertoire = repertoires.get(compte);
+        if (p.isEmpty() || repertoire == null) {
+            return Collections.emptyList();
+        }
+        return repertoire.rechercher(p);
+    }
+
+    /**
+     * @return Le nombre de correspondants indexés, tous comptes confondus.
+     */
+    public synchronized int taille() {
+        int taille = 0;
+        for (Repertoire repertoire : repertoires.values()) {
+            taille += repertoire.affichages.size();
+        }
+        return taille;
+    }
+
+    /**
+     * Les correspondants d'un compte et leurs clés de recherche triées.
+     */
+    private static class Repertoire {
+        private final String proprietaire;
+        private final Map<String, Integer> identifiants = new HashMap<>();
+        private final List<String> affichages = new ArrayList<>();
+        private final List<Boolean> nommes = new ArrayList<>();
+        private double[] scores = new double[64];
+
+        private String[] cles = new String[64];
+        private int[] contactsCles = new int[64];
+        private int nbCles;
+
+        /**
+         * @param compte L'adresse du compte, jamais proposée comme correspondant.
+         */
+        Repertoire(String compte) {
+            this.proprietaire = compte.toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * @param p Le préfixe, en minuscules et non vide.
+         * @return Les meilleurs correspondants dont une clé commence par {@code p}.
+         */
+        List<String> rechercher(String p) {
+            int debut = premierIndex(p);
+            int fin = premierIndex(p + Character.MAX_VALUE);
+
+            int[] meilleurs = new int[MAX_SUGGESTIONS];
+            int n = 0;
+            for (int i = debut; i < fin; i++) {
+                int contact = contactsCles[i];
+                double score = scores[contact];
+                if (n == MAX_SUGGESTIONS && score <= scores[meilleurs[n - 1]]) {
+                    continue;
+                }
+                boolean present = false;
+                for (int j = 0; j < n && !present; j++) {
+                    present = meilleurs[j] == contact;
+                }
+                if (present) {
+                    continue;
+                }
+                int pos = n < MAX_SUGGESTIONS ? n++ : n - 1;
+                while (pos > 0 && scores[meilleurs[pos - 1]] < score) {
+                    meilleurs[pos] = meilleurs[pos - 1];
+                    pos--;
+                }
+                meilleurs[pos] = contact;
+            }
+
+            List<String> resultats = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                resultats.add(affichages.get(meilleurs[i]));
+            }
+            return resultats;
+        }
+
+        /**
+         * Met à jour le score des correspondants d'une liste d'adresses et collecte les clés
+         * des correspondants nouveaux ou nouvellement nommés.
+         *
+         * @param adresses  Une liste d'adresses séparées par des virgules.
+         * @param poids     Le logarithme du nombre d'échanges représentés.
+         * @param date      La date de l'échange le plus récent, ou {@code null} pour maintenant.
+         * @param nouvelles Reçoit les clés à indexer.
+         */
+        void noter(String adresses, double poids, Timestamp date, List<Cle> nouvelles) {
+            if (adresses == null || adresses.isBlank()) {
+                return;
+            }
+            InternetAddress[] analysees;
+            try {
+                analysees = InternetAddress.parse(adresses, false);
+            } catch (AddressException e) {
+                analysees = new InternetAddress[0];
+            }
+            long millis = date != null ? date.getTime() : System.currentTimeMillis();
+            double valeur = poids + millis / 1000.0 / ECHELLE_RECENCE;
+
+            for (InternetAddress adresse : analysees) {
+                String courriel = adresse.getAddress();
+                if (courriel == null || courriel.isBlank()) {
+                    continue;
+                }
+                String cle = courriel.toLowerCase(Locale.ROOT);
+                if (cle.equals(proprietaire)) {
+                    continue;
+                }
+                String nom = adresse.getPersonal();
+                boolean avecNom = nom != null && !nom.isBlank();
+
+                Integer id = identifiants.get(cle);
+                if (id == null) {
+                    id = affichages.size();
+                    identifiants.put(cle, id);
+                    affichages.add(avecNom ? adresse.toUnicodeString() : courriel);
+                    nommes.add(avecNom);
+                    if (id == scores.length) {
+                        scores = Arrays.copyOf(scores, id * 2);
+                    }
+                    scores[id] = Double.NEGATIVE_INFINITY;
+                    nouvelles.add(new Cle(cle, id));
+                    if (avecNom) {
+                        ajouterMotsDuNom(nom, id, nouvelles);
+                    }
+                } else if (avecNom && !nommes.get(id)) {
+                    affichages.set(id, adresse.toUnicodeString());
+                    nommes.set(id, true);
+                    ajouterMotsDuNom(nom, id, nouvelles);
+                }
+                scores[id] = sommeLogarithmique(scores[id], valeur);
+            }
+        }
+
+        /**
+         * @return L'indice de la première clé supérieure ou égale à {@code cle}.
+         */
+        private int premierIndex(String cle) {
+            int bas = 0;
+            int haut = nbCles;
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                if (cles[milieu].compareTo(cle) < 0) {
+                    bas = milieu + 1;
+                } else {
+                    haut = milieu;
+                }
+            }
+            return bas;
+        }
+
+        /**
+         * Insère une clé à sa place dans le tableau trié.
+         */
+        void insererCle(String cle, int contact) {
+            if (nbCles == cles.length) {
+                cles = Arrays.copyOf(cles, nbCles * 2);
+                contactsCles = Arrays.copyOf(contactsCles, nbCles * 2);
+            }
+            int pos = premierIndex(cle);
+            System.arraycopy(cles, pos, cles, pos + 1, nbCles - pos);
+            System.arraycopy(contactsCles, pos, contactsCles, pos + 1, nbCles - pos);
+            cles[pos] = cle;
+            contactsCles[pos] = contact;
+            nbCles++;
+        }
+
+        /**
+         * Trie un lot de nouvelles clés et le fusionne en une passe avec les clés existantes.
+         */
+        void fusionner(List<Cle> nouvelles) {
+            if (nouvelles.isEmpty()) {
+                return;
+            }
+            nouvelles.sort((a, b) -> a.texte.compareTo(b.texte));
+            int total = nbCles + nouvelles.size();
+            String[] fusionCles = new String[Math.max(64, total)];
+            int[] fusionContacts = new int[fusionCles.length];
+
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < total; k++) {
+                if (j >= nouvelles.size() || (i < nbCles && cles[i].compareTo(nouvelles.get(j).texte) <= 0)) {
+                    fusionCles[k] = cles[i];
+                    fusionContacts[k] = contactsCles[i++];
+                } else {
+                    Cle cle = nouvelles.get(j++);
+                    fusionCles[k] = cle.texte;
+                    fusionContacts[k] = cle.contact;
+                }
+            }
+            cles = fusionCles;
+            contactsCles = fusionContacts;
+            nbCles = total;
+        }
+    }
+
+    private static void ajouterMotsDuNom(String nom, int id, List<Cle> nouvelles) {
+        for (String mot : nom.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (mot.length() >= 2) {
+                nouvelles.add(new Cle(mot, id));
+            }
+        }
+    }
+
+    /**
+     * Calcule {@code log(exp(a) + exp(b))} sans dépassement de capacité.
+     */
+    private static double sommeLogarithmique(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+}
@@ -0,0 +1,329 @@
+package com.monprojet;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Corps d'un e-mail lu par morceaux, avec un index des débuts de ligne construit à la demande.
+ * <p>
+ * Le texte n'est jamais chargé en entier : il est découpé en morceaux de
+ * {@value #TAILLE_MORCEAU} caractères (comptés en points de code, comme {@code SUBSTRING}
+ * en SQL), lus au besoin et gardés dans un petit cache LRU. L'index des lignes progresse
+ * d'un morceau à la fois, quand l'affichage approche de la dernière ligne connue ou
+ * qu'une recherche avance dans le texte. Les lignes trop longues sont coupées à
+ * {@value #LARGEUR_LIGNE} caractères, de préférence après un espace.
+ * </p>
+ * <p>
+ * Une position dans le texte est codée sur un {@code long} : le numéro du morceau dans
+ * les 32 bits de poids fort, l'indice dans la chaîne du morceau dans les 32 bits de poids
+ * faible. Les lectures bloquantes ({@link #indexerSuite()}, {@link #chercher(String, long)})
+ * sont destinées à un thread d'arrière-plan ; {@link #ligne(int)} ne bloque jamais.
+ * </p>
+ */
+public class CorpsMessage {
+
+    /**
+     * Nombre de caractères lus par requête.
+     */
+    public static final int TAILLE_MORCEAU = 256 * 1024;
+
+    /**
+     * Longueur maximale d'une ligne affichée.
+     */
+    public static final int LARGEUR_LIGNE = 200;
+
+    /**
+     * Nombre de morceaux gardés en mémoire.
+     */
+    private static final int MAX_MORCEAUX = 16;
+
+    /**
+     * Lit un morceau du corps d'un e-mail.
+     */
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * @param debut    La position du premier caractère, en points de code depuis 0.
+         * @param longueur Le nombre maximal de points de code à lire.
+         * @return Le texte lu, éventuellement vide.
+         */
+        String lire(long debut, int longueur);
+    }
+
+    private final Source source;
+    private final int nbMorceaux;
+    private final LinkedHashMap<Integer, String> morceaux = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> plusAncien) {
+            return size() > MAX_MORCEAUX;
+        }
+    };
+
+    private long[] debutsLignes = new long[1024];
+    private int nbLignes;
+    private int morceauxIndexes;
+    private int largeurCourante;
+    private int dernierEspace = -1;
+    private volatile boolean ferme;
+
+    /**
+     * Construit le corps d'un e-mail.
+     *
+     * @param source La lecture des morceaux.
+     * @param taille La longueur du texte, en points de code.
+     */
+    public CorpsMessage(Source source, long taille) {
+        this.source = source;
+        this.nbMorceaux = (int) ((taille + TAILLE_MORCEAU - 1) / TAILLE_MORCEAU);
+    }
+
+    /**
+     * @return Le nombre de lignes complètes indexées jusqu'ici. La dernière ligne d'un texte
+     *         partiellement indexé peut encore s'allonger : elle n'est pas comptée.
+     */
+    public synchronized int getNbLignes() {
+        return morceauxIndexes >= nbMorceaux ? nbLignes : Math.max(0, nbLignes - 1);
+    }
+
+    /**
+     * @return {@code true} si tout le texte a été indexé.
+     */
+    public synchronized boolean estIndexe() {
+        return morceauxIndexes >= nbMorceaux;
+    }
+
+    /**
+     * Indexe le morceau suivant. Lit la base : à appeler hors du thread JavaFX.
+     *
+     * @return {@code true} s'il reste des morceaux à indexer.
+     */
+    public boolean indexerSuite() {
+        int n;
+        synchronized (this) {
+            if (ferme || morceauxIndexes >= nbMorceaux) {
+                return false;
+            }
+            n = morceauxIndexes;
+        }
+        String texte = morceau(n);
+        synchronized (this) {
+            if (n != morceauxIndexes) {
+                return morceauxIndexes < nbMorceaux;
+            }
+            if (n == 0) {
+                ajouterLigne(0, 0);
+            }
+            for (int i = 0; i < texte.length(); i++) {
+                char c = texte.charAt(i);
+                if (c == '\n') {
+                    ajouterLigne(n, i + 1);
+                } else if (largeurCourante >= LARGEUR_LIGNE && !Character.isLowSurrogate(c)) {
+                    if (dernierEspace >= 0) {
+                        int reprise = dernierEspace + 1;
+                        ajouterLigne(n, reprise);
+                        largeurCourante = i - reprise + 1;
+                        continue;
+                    }
+                    ajouterLigne(n, i);
+                    largeurCourante = 1;
+                    continue;
+                } else {
+                    largeurCourante++;
+                }
+                if (c == ' ' || c == '\t') {
+                    dernierEspace = i;
+                }
+            }
+            // Une coupure après un espace ne peut pas revenir sur un morceau précédent.
+            dernierEspace = -1;
+            morceauxIndexes++;
+            return morceauxIndexes < nbMorceaux;
+        }
+    }
+
+    /**
+     * Renvoie le texte d'une ligne indexée, sans son retour à la ligne.
+     *
+     * @param index L'indice de la ligne.
+     * @return Le texte, ou {@code null} si un morceau nécessaire n'est plus en mémoire.
+     */
+    public String ligne(int index) {
+        long debut;
+        long fin;
+        synchronized (this) {
+            if (index < 0 || index >= nbLignes) {
+                return null;
+            }
+            debut = debutsLignes[index];
+            fin = index + 1 < nbLignes ? debutsLignes[index + 1] : finIndexee();
+        }
+        String texte = extraire(debut, fin);
+        if (texte == null) {
+            return null;
+        }
+        int longueur = texte.length();
+        while (longueur > 0 && (texte.charAt(longueur - 1) == '\n' || texte.charAt(longueur - 1) == '\r')) {
+            longueur--;
+        }
+        return texte.substring(0, longueur);
+    }
+
+    /**
+     * Relit les morceaux nécessaires à une ligne qui ne sont plus en mémoire.
+     * Lit la base : à appeler hors du thread JavaFX.
+     *
+     * @param index L'indice d'une ligne dont le texte n'était pas disponible.
+     */
+    public void chargerLigne(int index) {
+        long debut;
+        long fin;
+        synchronized (this) {
+            if (index < 0 || index >= nbLignes) {
+                return;
+            }
+            debut = debutsLignes[index];
+            fin = index + 1 < nbLignes ? debutsLignes[index + 1] : finIndexee();
+        }
+        morceau(numero(debut));
+        morceau(numero(fin));
+    }
+
+    /**
+     * Cherche la prochaine occurrence d'un terme, sans distinction de casse, en parcourant
+     * le texte morceau par morceau. Lit la base : à appeler hors du thread JavaFX.
+     *
+     * @param terme  Le terme recherché.
+     * @param depuis La position à partir de laquelle chercher.
+     * @return La position de l'occurrence, ou -1 si le terme n'apparaît plus ou si le corps a été fermé.
+     */
+    public long chercher(String terme, long depuis) {
+        if (terme.isEmpty()) {
+            return -1;
+        }
+        String precedent = "";
+        for (int n = numero(depuis); n < nbMorceaux && !ferme; n++) {
+            String texte = morceau(n);
+            int chevauchement = Math.min(precedent.length(), terme.length() - 1);
+            String fenetre = precedent.substring(precedent.length() - chevauchement) + texte;
+            int depart = n == numero(depuis) ? indice(depuis) : 0;
+            for (int i = depart; i + terme.length() <= fenetre.length(); i++) {
+                if (fenetre.regionMatches(true, i, terme, 0, terme.length())) {
+                    return i < chevauchement
+                        ? position(n - 1, precedent.length() - chevauchement + i)
+                        : position(n, i - chevauchement);
+                }
+            }
+            precedent = texte;
+        }
+        return -1;
+    }
+
+    /**
+     * Trouve la ligne qui contient une position, en prolongeant l'index si nécessaire.
+     * Peut lire la base : à appeler hors du thread JavaFX.
+     *
+     * @param position Une position renvoyée par {@link #chercher(String, long)}.
+     * @return L'indice de la ligne.
+     */
+    public int ligneDe(long position) {
+        while (!ferme) {
+            synchronized (this) {
+                boolean complet = morceauxIndexes >= nbMorceaux;
+                if (complet || morceauxIndexes > numero(position)) {
+                    int i = Arrays.binarySearch(debutsLignes, 0, nbLignes, position);
+                    i = i >= 0 ? i : Math.max(0, -i - 2);
+                    if (complet || i < nbLignes - 1) {
+                        return i;
+                    }
+                }
+            }
+            indexerSuite();
+        }
+        return 0;
+    }
+
+    /**
+     * Interrompt les lectures en cours, lorsque l'e-mail n'est plus affiché.
+     */
+    public void fermer() {
+        ferme = true;
+    }
+
+    /**
+     * @param index L'indice d'une ligne indexée.
+     * @return La position de son premier caractère.
+     */
+    public synchronized long debutLigne(int index) {
+        return debutsLignes[index];
+    }
+
+    private void ajouterLigne(int morceau, int indice) {
+        if (nbLignes == debutsLignes.length) {
+            debutsLignes = Arrays.copyOf(debutsLignes, nbLignes * 2);
+        }
+        debutsLignes[nbLignes++] = position(morceau, indice);
+        largeurCourante = 0;
+        dernierEspace = -1;
+    }
+
+    private long finIndexee() {
+        return position(morceauxIndexes, 0);
+    }
+
+    /**
+     * Assemble le texte entre deux positions à partir des morceaux en mémoire.
+     * Une ligne étant plus courte qu'un morceau, elle en chevauche au plus deux.
+     */
+    private String extraire(long debut, long fin) {
+        int n = numero(debut);
+        String premier = morceauSiCharge(n);
+        if (premier == null) {
+            return null;
+        }
+        if (numero(fin) == n) {
+            return premier.substring(indice(debut), indice(fin));
+        }
+        String deuxieme = indice(fin) == 0 ? "" : morceauSiCharge(numero(fin));
+        if (deuxieme == null) {
+            return null;
+        }
+        return premier.substring(indice(debut)) + deuxieme.substring(0, indice(fin));
+    }
+
+    private String morceauSiCharge(int n) {
+        synchronized (morceaux) {
+            return morceaux.get(n);
+        }
+    }
+
+    private String morceau(int n) {
+        if (n >= nbMorceaux) {
+            return "";
+        }
+        String texte = morceauSiCharge(n);
+        if (texte != null) {
+            return texte;
+        }
+        texte = source.lire((long) n * TAILLE_MORCEAU, TAILLE_MORCEAU);
+        if (texte == null) {
+            texte = "";
+        }
+        synchronized (morceaux) {
+            morceaux.put(n, texte);
+        }
+        return texte;
+    }
+
+    private static long position(int morceau, int indice) {
+        return ((long) morceau << 32) | indice;
+    }
+
+    private static int numero(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int indice(long position) {
+        return (int) position;
+    }
+}
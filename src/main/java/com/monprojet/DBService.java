@@ -1,8 +1,15 @@
 package com.monprojet;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Fournit des services pour interagir avec la base de données des e-mails.
@@ -30,31 +37,49 @@ public class DBService {
     private static final String PASS = "";
 
     /**
-     * Récupère la liste des e-mails pour un dossier spécifié.
+     * Nombre maximal de lignes par requête d'insertion de {@link #saveEmails(List)}.
+     */
+    private static final int LIGNES_PAR_INSERTION = 100;
+
+    /**
+     * Nombre de caractères de message au-delà duquel une requête d'insertion de
+     * {@link #saveEmails(List)} est envoyée, pour rester sous {@code max_allowed_packet}.
+     */
+    private static final int CARACTERES_PAR_INSERTION = 4_000_000;
+
+    /**
+     * Nombre de caractères du corps lus avec la liste des e-mails. Le reste d'un corps plus
+     * long est lu par morceaux avec {@link #getMorceauMessage(int, long, int)}.
+     */
+    public static final int LONGUEUR_APERCU = 2000;
+
+    /**
+     * Colonnes lues pour construire un {@link Email} : le corps est tronqué à
+     * {@value #LONGUEUR_APERCU} caractères et accompagné de sa longueur réelle.
+     */
+    private static final String COLONNES_EMAIL = "id, compte, expediteur, destinataire, sujet, "
+            + "LEFT(message, " + LONGUEUR_APERCU + ") AS message, CHAR_LENGTH(message) AS taille_message, "
+            + "date_envoi, dossier";
+
+    /**
+     * Récupère la liste des e-mails d'un compte pour un dossier spécifié.
      *
+     * @param compte  L'adresse du compte connecté.
      * @param dossier Le nom du dossier (ex: "INBOX", "OUTBOX", "ENSA").
      * @return Une liste d'objets {@link Email} triés par date d'envoi décroissante.
      */
-    public List<Email> getEmails(String dossier) {
+    public List<Email> getEmails(String compte, String dossier) {
         List<Email> liste = new ArrayList<>();
-        String sql = "SELECT * FROM emails WHERE dossier = ? ORDER BY date_envoi DESC";
+        String sql = "SELECT " + COLONNES_EMAIL + " FROM emails WHERE compte = ? AND dossier = ? ORDER BY date_envoi DESC";
 
         try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, dossier);
+            pstmt.setString(1, compte);
+            pstmt.setString(2, dossier);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Email e = new Email(
-                        rs.getInt("id"),
-                        rs.getString("expediteur"),
-                        rs.getString("destinataire"),
-                        rs.getString("sujet"),
-                        rs.getString("message"),
-                        rs.getTimestamp("date_envoi"),
-                        rs.getString("dossier")
-                    );
-                    liste.add(e);
+                    liste.add(lireEmail(rs));
                 }
             }
         } catch (SQLException e) {
@@ -63,29 +88,296 @@ public class DBService {
         return liste;
     }
 
+    /**
+     * Construit un {@link Email} à partir de la ligne courante d'un résultat.
+     *
+     * @param rs Le résultat positionné sur une ligne lue avec {@link #COLONNES_EMAIL}.
+     * @return L'e-mail correspondant.
+     * @throws SQLException Si une colonne ne peut pas être lue.
+     */
+    private Email lireEmail(ResultSet rs) throws SQLException {
+        return new Email(
+            rs.getInt("id"),
+            rs.getString("compte"),
+            rs.getString("expediteur"),
+            rs.getString("destinataire"),
+            rs.getString("sujet"),
+            rs.getString("message"),
+            rs.getTimestamp("date_envoi"),
+            rs.getString("dossier"),
+            rs.getInt("taille_message")
+        );
+    }
+
     /**
      * Sauvegarde un nouvel e-mail dans la base de données.
-     * La date d'envoi est automatiquement définie sur l'heure actuelle.
+     * Si l'e-mail n'a pas de date (message rédigé localement), la date d'envoi est
+     * définie sur l'heure actuelle.
      *
      * @param email L'objet {@link Email} à sauvegarder.
+     * @return L'identifiant attribué à l'e-mail, ou -1 en cas d'erreur.
+     */
+    public int saveEmail(Email email) {
+        String sql = "INSERT INTO emails (compte, expediteur, destinataire, sujet, message, dossier, date_envoi, empreinte) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            remplirInsertion(pstmt, 0, email);
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la sauvegarde de l'email : " + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Récupère un e-mail par son identifiant, tel qu'il est stocké (y compris le dossier
+     * choisi par le trigger de tri automatique).
+     *
+     * @param id L'identifiant unique de l'e-mail.
+     * @return L'e-mail, ou {@code null} s'il n'existe pas.
+     */
+    public Email getEmail(int id) {
+        String sql = "SELECT " + COLONNES_EMAIL + " FROM emails WHERE id = ?";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return lireEmail(rs);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la récupération de l'email : " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Lit un morceau du corps d'un e-mail, sans charger le reste du texte côté client.
+     *
+     * @param id       L'identifiant unique de l'e-mail.
+     * @param debut    La position du premier caractère, depuis 0.
+     * @param longueur Le nombre maximal de caractères à lire.
+     * @return Le morceau lu, vide au-delà de la fin du corps ou en cas d'erreur.
+     */
+    public String getMorceauMessage(int id, long debut, int longueur) {
+        String sql = "SELECT SUBSTRING(message, ?, ?) FROM emails WHERE id = ?";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, debut + 1);
+            pstmt.setInt(2, longueur);
+            pstmt.setInt(3, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getString(1) != null) {
+                    return rs.getString(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la lecture du message : " + e.getMessage());
+        }
+        return "";
+    }
+
+    /**
+     * Sauvegarde un lot d'e-mails en une seule transaction, en ignorant les doublons.
+     * <p>
+     * Les doublons sont détectés par l'index unique sur (compte, empreinte), l'empreinte
+     * reprenant les critères de {@link #emailExiste(String, String, String, Timestamp)}.
+     * Utilisé par l'import d'archives, où un aller-retour par message serait trop lent :
+     * les e-mails sont envoyés par requêtes multi-lignes d'au plus
+     * {@value #LIGNES_PAR_INSERTION} lignes, dont MySQL renvoie le nombre exact de lignes
+     * insérées, doublons ignorés exclus.
+     * </p>
+     *
+     * @param emails Les e-mails à sauvegarder.
+     * @return Le nombre d'e-mails réellement insérés, ou -1 en cas d'erreur.
+     */
+    public int saveEmails(List<Email> emails) {
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS)) {
+            conn.setAutoCommit(false);
+            try {
+                int inseres = 0;
+                int debut = 0;
+                while (debut < emails.size()) {
+                    int fin = debut;
+                    long caracteres = 0;
+                    while (fin < emails.size() && fin - debut < LIGNES_PAR_INSERTION
+                            && (fin == debut || caracteres < CARACTERES_PAR_INSERTION)) {
+                        String message = emails.get(fin++).getMessage();
+                        caracteres += message != null ? message.length() : 0;
+                    }
+                    String sql = "INSERT IGNORE INTO emails (compte, expediteur, destinataire, sujet, message, dossier, date_envoi, empreinte) VALUES "
+                            + String.join(", ", Collections.nCopies(fin - debut, "(?, ?, ?, ?, ?, ?, ?, ?)"));
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        for (int i = debut; i < fin; i++) {
+                            remplirInsertion(pstmt, (i - debut) * 8, emails.get(i));
+                        }
+                        inseres += pstmt.executeUpdate();
+                    }
+                    debut = fin;
+                }
+                conn.commit();
+                return inseres;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la sauvegarde d'un lot d'emails : " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Renseigne les paramètres d'une requête d'insertion dans la table {@code emails}.
+     *
+     * @param pstmt    La requête préparée.
+     * @param decalage Le nombre de paramètres précédant ceux de cet e-mail.
+     * @param email    L'e-mail à insérer.
+     * @throws SQLException Si un paramètre ne peut pas être défini.
      */
-    public void saveEmail(Email email) {
-        String sql = "INSERT INTO emails (expediteur, destinataire, sujet, message, dossier, date_envoi) VALUES (?, ?, ?, ?, ?, ?)";
+    private void remplirInsertion(PreparedStatement pstmt, int decalage, Email email) throws SQLException {
+        Timestamp date = email.getDate() != null ? email.getDate() : new Timestamp(System.currentTimeMillis());
+        pstmt.setString(decalage + 1, email.getCompte());
+        pstmt.setString(decalage + 2, email.getExpediteur());
+        pstmt.setString(decalage + 3, email.getDestinataire());
+        pstmt.setString(decalage + 4, email.getSujet());
+        pstmt.setString(decalage + 5, email.getMessage());
+        pstmt.setString(decalage + 6, email.getDossier());
+        pstmt.setTimestamp(decalage + 7, date);
+        pstmt.setString(decalage + 8, empreinte(email.getCompte(), email.getExpediteur(), email.getSujet(), date));
+    }
 
+    /**
+     * Calcule l'empreinte SHA-1 utilisée pour dédoublonner les e-mails d'un compte.
+     * La date est ramenée à la seconde, comme dans la colonne {@code date_envoi}.
+     *
+     * @param compte     L'adresse du compte.
+     * @param expediteur L'adresse e-mail de l'expéditeur.
+     * @param sujet      Le sujet de l'e-mail.
+     * @param date       La date et l'heure d'envoi de l'e-mail.
+     * @return L'empreinte sous forme hexadécimale (40 caractères).
+     */
+    private static String empreinte(String compte, String expediteur, String sujet, Timestamp date) {
+        String source = compte + "\n" + expediteur + "\n" + sujet + "\n" + (date.getTime() / 1000);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(40);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 indisponible", e);
+        }
+    }
+
+    /**
+     * Récupère le point de reprise d'un import.
+     *
+     * @param compte L'adresse du compte cible de l'import.
+     * @param source Le chemin absolu du fichier ou dossier importé.
+     * @return La position déjà importée (octets pour un mbox, fichiers pour un dossier EML), ou 0.
+     */
+    public long getCheckpoint(String compte, String source) {
+        String sql = "SELECT position FROM import_checkpoints WHERE compte = ? AND source = ?";
         try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, email.getExpediteur());
-            pstmt.setString(2, email.getDestinataire());
-            pstmt.setString(3, email.getSujet());
-            pstmt.setString(4, email.getMessage());
-            pstmt.setString(5, email.getDossier());
-            pstmt.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+            pstmt.setString(1, compte);
+            pstmt.setString(2, source);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la lecture du point de reprise : " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Enregistre le point de reprise d'un import.
+     *
+     * @param compte   L'adresse du compte cible de l'import.
+     * @param source   Le chemin absolu du fichier ou dossier importé.
+     * @param position La position jusqu'à laquelle tous les messages sont enregistrés.
+     */
+    public void saveCheckpoint(String compte, String source, long position) {
+        String sql = "INSERT INTO import_checkpoints (compte, source, position) VALUES (?, ?, ?) "
+                   + "ON DUPLICATE KEY UPDATE position = VALUES(position)";
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
+            pstmt.setString(1, compte);
+            pstmt.setString(2, source);
+            pstmt.setLong(3, position);
             pstmt.executeUpdate();
         } catch (SQLException e) {
-            System.err.println("Erreur lors de la sauvegarde de l'email : " + e.getMessage());
+            System.err.println("Erreur lors de l'enregistrement du point de reprise : " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Le plus grand identifiant d'e-mail enregistré, ou 0 si la table est vide ou
+     *         en cas d'erreur.
+     */
+    public int getDernierIdEmail() {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM emails";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la lecture du dernier identifiant : " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Récupère les correspondants de chaque compte, avec le nombre d'e-mails échangés et la
+     * date du plus récent. Les colonnes expediteur et destinataire sont agrégées ensemble.
+     *
+     * @param dernierId Le plus grand identifiant d'e-mail pris en compte.
+     * @return Une liste de {@link ContactIndex.Correspondant}, un par compte et valeur distincte.
+     */
+    public List<ContactIndex.Correspondant> getCorrespondants(int dernierId) {
+        List<ContactIndex.Correspondant> liste = new ArrayList<>();
+        String sql = "SELECT compte, adresses, COUNT(*), MAX(date_envoi) FROM ("
+                   + "SELECT compte, expediteur AS adresses, date_envoi FROM emails WHERE id <= ? "
+                   + "UNION ALL SELECT compte, destinataire, date_envoi FROM emails WHERE id <= ?"
+                   + ") AS echanges GROUP BY compte, adresses";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, dernierId);
+            pstmt.setInt(2, dernierId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    liste.add(new ContactIndex.Correspondant(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getTimestamp(4)));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la récupération des correspondants : " + e.getMessage());
         }
+        return liste;
     }
 
     /**
@@ -106,26 +398,146 @@ public class DBService {
         }
     }
 
+    /**
+     * Récupère les partitions de la table {@code archives}, dans l'ordre de leurs bornes.
+     *
+     * @return Pour chaque partition, sa borne supérieure exclue (valeur de {@code TO_DAYS}),
+     *         ou {@link Long#MAX_VALUE} pour {@code MAXVALUE}. Vide si la table n'est pas partitionnée.
+     */
+    public Map<String, Long> getPartitionsArchives() {
+        Map<String, Long> partitions = new LinkedHashMap<>();
+        String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM INFORMATION_SCHEMA.PARTITIONS "
+                   + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'archives' AND PARTITION_NAME IS NOT NULL "
+                   + "ORDER BY PARTITION_ORDINAL_POSITION";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                String borne = rs.getString(2);
+                partitions.put(rs.getString(1), "MAXVALUE".equalsIgnoreCase(borne) ? Long.MAX_VALUE : Long.parseLong(borne));
+            }
+        } catch (SQLException | NumberFormatException e) {
+            System.err.println("Erreur lors de la lecture des partitions d'archives : " + e.getMessage());
+        }
+        return partitions;
+    }
+
+    /**
+     * Compte les archives d'une partition, jusqu'à une limite.
+     *
+     * @param nom    Le nom de la partition.
+     * @param limite Le nombre de lignes au-delà duquel le comptage s'arrête.
+     * @return Le nombre de lignes, au plus {@code limite + 1}, ou -1 en cas d'erreur.
+     */
+    public long compterArchivesPartition(String nom, long limite) {
+        String sql = "SELECT COUNT(*) FROM (SELECT 1 FROM archives PARTITION (" + nom + ") LIMIT ?) AS lignes";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, limite + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Erreur lors du comptage de la partition " + nom + " : " + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Crée des partitions d'archives en les détachant du début de la partition {@code MAXVALUE},
+     * en une seule réorganisation. MySQL recopie les lignes de la partition réorganisée :
+     * l'opération n'est instantanée que si elle est vide.
+     *
+     * @param nouvelles Les partitions à créer, par bornes croissantes : nom et date exclue
+     *                  jusqu'à laquelle chacune reçoit les archives.
+     * @param futur     Le nom de la partition {@code MAXVALUE}.
+     * @return {@code true} si les partitions ont été créées.
+     */
+    public boolean creerPartitionsArchives(Map<String, LocalDate> nouvelles, String futur) {
+        StringBuilder sql = new StringBuilder("ALTER TABLE archives REORGANIZE PARTITION ")
+                .append(futur).append(" INTO (");
+        for (Map.Entry<String, LocalDate> partition : nouvelles.entrySet()) {
+            sql.append("PARTITION ").append(partition.getKey())
+               .append(" VALUES LESS THAN (TO_DAYS('").append(partition.getValue()).append("')), ");
+        }
+        sql.append("PARTITION ").append(futur).append(" VALUES LESS THAN MAXVALUE)");
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             Statement stmt = conn.createStatement()) {
+
+            stmt.executeUpdate(sql.toString());
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la création des partitions " + nouvelles.keySet() + " : " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Supprime une partition d'archives et toutes ses lignes, sans les parcourir.
+     *
+     * @param nom Le nom de la partition.
+     */
+    public void supprimerPartitionArchives(String nom) {
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             Statement stmt = conn.createStatement()) {
+
+            stmt.executeUpdate("ALTER TABLE archives DROP PARTITION " + nom);
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la suppression de la partition " + nom + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Supprime un lot d'archives antérieures à une date.
+     *
+     * @param avant  La date de suppression en dessous de laquelle une archive a expiré.
+     * @param limite Le nombre maximal de lignes supprimées.
+     * @return Le nombre de lignes supprimées, ou -1 en cas d'erreur.
+     */
+    public int purgerArchives(Timestamp avant, int limite) {
+        String sql = "DELETE FROM archives WHERE date_suppression < ? LIMIT ?";
+
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, avant);
+            pstmt.setInt(2, limite);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la purge des archives : " + e.getMessage());
+        }
+        return -1;
+    }
+
     /**
      * Vérifie si un e-mail existe déjà dans la base de données.
      * <p>
-     * La vérification est basée sur une combinaison unique de l'expéditeur, du sujet et de la date d'envoi
-     * pour éviter les doublons lors de la synchronisation.
+     * La vérification est basée sur une combinaison unique du compte, de l'expéditeur, du sujet
+     * et de la date d'envoi pour éviter les doublons lors de la synchronisation.
      * </p>
      *
+     * @param compte     L'adresse du compte connecté.
      * @param expediteur L'adresse e-mail de l'expéditeur.
      * @param sujet      Le sujet de l'e-mail.
      * @param date       La date et l'heure d'envoi de l'e-mail.
      * @return {@code true} si un e-mail correspondant est trouvé, sinon {@code false}.
      */
-    public boolean emailExiste(String expediteur, String sujet, Timestamp date) {
-        String sql = "SELECT COUNT(*) FROM emails WHERE expediteur = ? AND sujet = ? AND date_envoi = ?";
+    public boolean emailExiste(String compte, String expediteur, String sujet, Timestamp date) {
+        String sql = "SELECT COUNT(*) FROM emails WHERE compte = ? AND expediteur = ? AND sujet = ? AND date_envoi = ?";
         try (Connection conn = DriverManager.getConnection(URL, USER, PASS);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
              
-            pstmt.setString(1, expediteur);
-            pstmt.setString(2, sujet);
-            pstmt.setTimestamp(3, date);
+            pstmt.setString(1, compte);
+            pstmt.setString(2, expediteur);
+            pstmt.setString(3, sujet);
+            pstmt.setTimestamp(4, date);
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
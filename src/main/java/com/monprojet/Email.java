@@ -14,17 +14,20 @@ import java.text.SimpleDateFormat;
 public class Email {
 
     private final int id;
+    private final String compte;
     private final String expediteur;
     private final String destinataire;
     private final String sujet;
     private final String message;
     private final Timestamp date;
     private final String dossier;
+    private final int tailleMessage;
 
     /**
      * Construit une nouvelle instance d'Email.
      *
      * @param id           L'identifiant unique de l'e-mail (généralement depuis la base de données).
+     * @param compte       L'adresse du compte connecté auquel appartient l'e-mail.
      * @param expediteur   L'adresse e-mail de l'expéditeur.
      * @param destinataire L'adresse e-mail du destinataire.
      * @param sujet        Le sujet de l'e-mail.
@@ -32,14 +35,34 @@ public class Email {
      * @param date         La date et l'heure d'envoi.
      * @param dossier      Le dossier où l'e-mail est classé (ex: "INBOX", "OUTBOX").
      */
-    public Email(int id, String expediteur, String destinataire, String sujet, String message, Timestamp date, String dossier) {
+    public Email(int id, String compte, String expediteur, String destinataire, String sujet, String message, Timestamp date, String dossier) {
+        this(id, compte, expediteur, destinataire, sujet, message, date, dossier,
+             message != null ? message.codePointCount(0, message.length()) : 0);
+    }
+
+    /**
+     * Construit une instance d'Email dont le corps peut n'être qu'un aperçu.
+     *
+     * @param id            L'identifiant unique de l'e-mail.
+     * @param compte        L'adresse du compte connecté auquel appartient l'e-mail.
+     * @param expediteur    L'adresse e-mail de l'expéditeur.
+     * @param destinataire  L'adresse e-mail du destinataire.
+     * @param sujet         Le sujet de l'e-mail.
+     * @param message       Le début du contenu textuel de l'e-mail.
+     * @param date          La date et l'heure d'envoi.
+     * @param dossier       Le dossier où l'e-mail est classé.
+     * @param tailleMessage La longueur du contenu complet, en caractères.
+     */
+    public Email(int id, String compte, String expediteur, String destinataire, String sujet, String message, Timestamp date, String dossier, int tailleMessage) {
         this.id = id;
+        this.compte = compte;
         this.expediteur = expediteur;
         this.destinataire = destinataire;
         this.sujet = sujet;
         this.message = message;
         this.date = date;
         this.dossier = dossier;
+        this.tailleMessage = tailleMessage;
     }
 
     /**
@@ -64,6 +87,11 @@ public class Email {
      */
     public int getId() { return id; }
 
+    /**
+     * @return L'adresse du compte auquel appartient l'e-mail.
+     */
+    public String getCompte() { return compte; }
+
     /**
      * @return La date et l'heure d'envoi de l'e-mail.
      */
@@ -75,10 +103,22 @@ public class Email {
     public String getSujet() { return sujet; }
 
     /**
-     * @return Le contenu (corps) de l'e-mail.
+     * @return Le contenu (corps) de l'e-mail, ou seulement son début si {@link #isMessageComplet()} est faux.
      */
     public String getMessage() { return message; }
 
+    /**
+     * @return La longueur du contenu complet, en caractères.
+     */
+    public int getTailleMessage() { return tailleMessage; }
+
+    /**
+     * @return {@code true} si {@link #getMessage()} contient tout le corps de l'e-mail.
+     */
+    public boolean isMessageComplet() {
+        return message == null || message.codePointCount(0, message.length()) >= tailleMessage;
+    }
+
     /**
      * @return L'adresse e-mail de l'expéditeur.
      */
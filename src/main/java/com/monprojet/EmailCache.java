@@ -0,0 +1,254 @@
+package com.monprojet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache en lecture des dossiers d'e-mails, placé devant {@link DBService}.
+ * <p>
+ * Le résultat de {@link DBService#getEmails(String, String)} est conservé par couple
+ * (compte, dossier), ce qui rend instantané le retour sur un dossier déjà consulté.
+ * Chaque dossier porte un numéro de version incrémenté à chaque modification : un
+ * chargement commencé avant une modification n'est jamais mis en cache. Les écritures
+ * passent par cette classe afin de n'invalider, ou de corriger sur place, que les
+ * dossiers concernés. La mémoire est bornée par un nombre total d'e-mails ; au-delà,
+ * les dossiers consultés le moins récemment sont évincés.
+ * </p>
+ */
+public class EmailCache {
+
+    /**
+     * Nombre maximal d'e-mails conservés, tous dossiers confondus.
+     */
+    private static final int MAX_EMAILS = 50_000;
+
+    private final DBService dbService;
+    private final LinkedHashMap<String, List<Email>> dossiers = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> versions = new HashMap<>();
+    private int emailsEnCache;
+    private long succes;
+    private long echecs;
+
+    /**
+     * Construit le cache.
+     *
+     * @param dbService Le service de base de données sous-jacent.
+     */
+    public EmailCache(DBService dbService) {
+        this.dbService = dbService;
+    }
+
+    /**
+     * Récupère les e-mails d'un dossier, depuis le cache si possible.
+     *
+     * @param compte  L'adresse du compte connecté.
+     * @param dossier Le nom du dossier (ex: "INBOX", "OUTBOX", "ENSA").
+     * @return Une liste non modifiable d'e-mails triés par date d'envoi décroissante.
+     */
+    public List<Email> getEmails(String compte, String dossier) {
+        String cle = cle(compte, dossier);
+        long version;
+        synchronized (this) {
+            List<Email> enCache = dossiers.get(cle);
+            if (enCache != null) {
+                succes++;
+                return enCache;
+            }
+            echecs++;
+            version = versions.getOrDefault(cle, 0L);
+        }
+
+        List<Email> charges = Collections.unmodifiableList(dbService.getEmails(compte, dossier));
+
+        synchronized (this) {
+            if (versions.getOrDefault(cle, 0L) == version) {
+                mettreEnCache(cle, charges);
+            }
+        }
+        return charges;
+    }
+
+    /**
+     * Sauvegarde un nouvel e-mail et invalide les dossiers où il peut apparaître.
+     * <p>
+     * Le trigger de tri automatique peut rediriger l'e-mail vers le dossier "ENSA" :
+     * ce dossier est donc invalidé en plus du dossier demandé.
+     * </p>
+     *
+     * @param email L'objet {@link Email} à sauvegarder.
+     */
+    public void saveEmail(Email email) {
+        dbService.saveEmail(email);
+        invalider(email.getCompte(), email.getDossier());
+        invalider(email.getCompte(), "ENSA");
+    }
+
+    /**
+     * Supprime un e-mail et le retire des dossiers en cache qui le contiennent,
+     * sans les recharger.
+     *
+     * @param id L'identifiant unique de l'e-mail à supprimer.
+     */
+    public void deleteEmail(int id) {
+        dbService.deleteEmail(id);
+        synchronized (this) {
+            for (Map.Entry<String, List<Email>> entree : dossiers.entrySet()) {
+                List<Email> corriges = new ArrayList<>(entree.getValue());
+                if (corriges.removeIf(e -> e.getId() == id)) {
+                    emailsEnCache--;
+                    versions.merge(entree.getKey(), 1L, Long::sum);
+                    entree.setValue(Collections.unmodifiableList(corriges));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lit un morceau du corps d'un e-mail. Le début du corps est servi depuis l'aperçu en
+     * cache ; les morceaux suivants ne sont pas mis en cache ici.
+     *
+     * @param email    L'e-mail, tel que renvoyé par {@link #getEmails(String, String)}.
+     * @param debut    La position du premier caractère, depuis 0.
+     * @param longueur Le nombre maximal de caractères à lire.
+     * @return Le morceau lu.
+     */
+    public String lireMessage(Email email, long debut, int longueur) {
+        String apercu = email.getMessage() != null ? email.getMessage() : "";
+        int disponibles = apercu.codePointCount(0, apercu.length());
+        if (debut + longueur <= disponibles || email.isMessageComplet()) {
+            int d = apercu.offsetByCodePoints(0, (int) Math.min(debut, disponibles));
+            int f = apercu.offsetByCodePoints(d, (int) Math.min(longueur, disponibles - Math.min(debut, disponibles)));
+            return apercu.substring(d, f);
+        }
+        return dbService.getMorceauMessage(email.getId(), debut, longueur);
+    }
+
+    /**
+     * Ajoute des e-mails déjà enregistrés aux dossiers en cache qui les concernent, à leur
+     * place dans l'ordre des dates, sans recharger ces dossiers.
+     * Conçu pour être enregistré comme écouteur du {@link SyncScheduler}.
+     * <p>
+     * Un ajout n'est pas une consultation : les dossiers sont corrigés via leur entrée,
+     * sans modifier l'ordre d'éviction, puis la borne mémoire est appliquée. Un dossier
+     * chargé entre l'enregistrement d'un e-mail et sa publication le contient déjà : les
+     * identifiants présents sont ignorés.
+     * </p>
+     *
+     * @param emails Les e-mails enregistrés, avec leur identifiant et leur dossier définitif.
+     */
+    public synchronized void ajouter(List<Email> emails) {
+        Map<String, List<Email>> parDossier = new HashMap<>();
+        for (Email email : emails) {
+            String cle = cle(email.getCompte(), email.getDossier());
+            versions.merge(cle, 1L, Long::sum);
+            parDossier.computeIfAbsent(cle, c -> new ArrayList<>()).add(email);
+        }
+        for (Map.Entry<String, List<Email>> entree : dossiers.entrySet()) {
+            List<Email> ajouts = parDossier.get(entree.getKey());
+            if (ajouts == null) {
+                continue;
+            }
+            List<Email> corriges = new ArrayList<>(entree.getValue().size() + ajouts.size());
+            Set<Integer> presents = new HashSet<>();
+            for (Email email : entree.getValue()) {
+                corriges.add(email);
+                presents.add(email.getId());
+            }
+            for (Email email : ajouts) {
+                if (presents.add(email.getId())) {
+                    corriges.add(EmailListModel.positionParDate(corriges, email), email);
+                    emailsEnCache++;
+                }
+            }
+            entree.setValue(Collections.unmodifiableList(corriges));
+        }
+        evincer(null);
+    }
+
+    /**
+     * Invalide tous les dossiers d'un compte, par exemple après un import d'archive.
+     *
+     * @param compte L'adresse du compte.
+     */
+    public synchronized void invaliderCompte(String compte) {
+        for (String dossier : new String[] {"INBOX", "OUTBOX", "ENSA"}) {
+            invalider(compte, dossier);
+        }
+    }
+
+    /**
+     * Retire un dossier du cache et incrémente sa version.
+     *
+     * @param compte  L'adresse du compte.
+     * @param dossier Le nom du dossier.
+     */
+    public synchronized void invalider(String compte, String dossier) {
+        String cle = cle(compte, dossier);
+        versions.merge(cle, 1L, Long::sum);
+        List<Email> retires = dossiers.remove(cle);
+        if (retires != null) {
+            emailsEnCache -= retires.size();
+        }
+    }
+
+    /**
+     * @return Le nombre de lectures servies depuis le cache.
+     */
+    public synchronized long getSucces() { return succes; }
+
+    /**
+     * @return Le nombre de lectures ayant nécessité un accès à la base.
+     */
+    public synchronized long getEchecs() { return echecs; }
+
+    /**
+     * @return La proportion de lectures servies depuis le cache, entre 0 et 1.
+     */
+    public synchronized double getTauxSucces() {
+        long total = succes + echecs;
+        return total == 0 ? 0 : (double) succes / total;
+    }
+
+    /**
+     * Ajoute un dossier au cache puis applique la borne mémoire.
+     *
+     * @param cle    La clé du dossier.
+     * @param emails Le contenu du dossier.
+     */
+    private void mettreEnCache(String cle, List<Email> emails) {
+        List<Email> ancien = dossiers.put(cle, emails);
+        if (ancien != null) {
+            emailsEnCache -= ancien.size();
+        }
+        emailsEnCache += emails.size();
+        evincer(cle);
+    }
+
+    /**
+     * Évince les dossiers les moins récemment consultés tant que la borne mémoire est dépassée.
+     *
+     * @param protege La clé d'un dossier à ne pas évincer, ou {@code null}.
+     */
+    private void evincer(String protege) {
+        Iterator<Map.Entry<String, List<Email>>> it = dossiers.entrySet().iterator();
+        while (emailsEnCache > MAX_EMAILS && it.hasNext()) {
+            Map.Entry<String, List<Email>> plusAncien = it.next();
+            if (plusAncien.getKey().equals(protege)) {
+                continue;
+            }
+            emailsEnCache -= plusAncien.getValue().size();
+            it.remove();
+        }
+    }
+
+    private static String cle(String compte, String dossier) {
+        return compte + "/" + dossier;
+    }
+}
@@ -0,0 +1,232 @@
+package com.monprojet;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Liste observable des e-mails affichés, mise à jour par différence.
+ * <p>
+ * Au lieu de vider puis de remplir la liste à chaque rafraîchissement, {@link #reconcilier(List)}
+ * compare le nouveau résultat avec le contenu actuel par identifiant et n'applique que les
+ * suppressions, déplacements et insertions nécessaires, regroupés en un seul événement de
+ * changement. Les instances déjà présentes sont conservées, ce qui préserve la sélection
+ * et la position de défilement de la {@code ListView}. Les identifiants présents sont
+ * tenus à jour dans un ensemble, pour que {@link #inserer(List)} écarte les doublons sans
+ * parcourir la liste.
+ * </p>
+ */
+public class EmailListModel extends ModifiableObservableListBase<Email> {
+
+    private final List<Email> elements = new ArrayList<>();
+    private final Set<Integer> identifiants = new HashSet<>();
+
+    @Override
+    public Email get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    protected void doAdd(int index, Email element) {
+        elements.add(index, element);
+        identifiants.add(element.getId());
+    }
+
+    @Override
+    protected Email doSet(int index, Email element) {
+        Email ancien = elements.set(index, element);
+        identifiants.remove(ancien.getId());
+        identifiants.add(element.getId());
+        return ancien;
+    }
+
+    @Override
+    protected Email doRemove(int index) {
+        Email retire = elements.remove(index);
+        identifiants.remove(retire.getId());
+        return retire;
+    }
+
+    /**
+     * Aligne le contenu de la liste sur un nouveau résultat en un minimum de modifications.
+     * <p>
+     * Les e-mails absents du nouveau résultat sont retirés, ceux dont l'ordre relatif a changé
+     * sont déplacés (hors de la plus longue sous-suite déjà ordonnée), et les nouveaux sont insérés
+     * à leur position. Les observateurs reçoivent un unique événement regroupant ces modifications.
+     * Si moins de la moitié des e-mails affichés figurent dans le nouveau résultat, la différence
+     * coûterait plus qu'elle n'épargne : le contenu est alors remplacé d'un bloc.
+     * </p>
+     *
+     * @param nouveaux Le nouveau contenu, dans l'ordre d'affichage souhaité.
+     */
+    public void reconcilier(List<Email> nouveaux) {
+        Map<Integer, Integer> positions = new HashMap<>(nouveaux.size() * 2);
+        for (int i = 0; i < nouveaux.size(); i++) {
+            positions.put(nouveaux.get(i).getId(), i);
+        }
+        int communs = 0;
+        for (Email e : elements) {
+            if (positions.containsKey(e.getId())) {
+                communs++;
+            }
+        }
+        if (elements.isEmpty() || communs * 2 < elements.size()) {
+            remplacer(nouveaux);
+            return;
+        }
+
+        beginChange();
+        try {
+            // 1. Retirer les e-mails qui ont disparu du résultat
+            for (int i = elements.size() - 1; i >= 0; i--) {
+                if (!positions.containsKey(elements.get(i).getId())) {
+                    remove(i);
+                }
+            }
+
+            // 2. Retirer ceux qui ne sont plus dans le bon ordre, pour les réinsérer ensuite
+            Map<Integer, Email> deplaces = new HashMap<>();
+            boolean[] gardes = plusLongueSousSuiteCroissante(positions);
+            for (int i = elements.size() - 1; i >= 0; i--) {
+                if (!gardes[i]) {
+                    Email e = remove(i);
+                    deplaces.put(e.getId(), e);
+                }
+            }
+
+            // 3. Insérer les nouveaux et les déplacés à leur place
+            for (int j = 0; j < nouveaux.size(); j++) {
+                Email attendu = nouveaux.get(j);
+                if (j < elements.size() && elements.get(j).getId() == attendu.getId()) {
+                    continue;
+                }
+                Email deplace = deplaces.remove(attendu.getId());
+                add(j, deplace != null ? deplace : attendu);
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Remplace tout le contenu de la liste, en un seul événement de remplacement.
+     * Utilisé au changement de dossier, où aucun e-mail affiché n'est conservé.
+     *
+     * @param nouveaux Le nouveau contenu, dans l'ordre d'affichage souhaité.
+     */
+    public void remplacer(List<Email> nouveaux) {
+        beginChange();
+        try {
+            if (!elements.isEmpty()) {
+                nextRemove(0, new ArrayList<>(elements));
+            }
+            elements.clear();
+            identifiants.clear();
+            elements.addAll(nouveaux);
+            for (Email e : nouveaux) {
+                identifiants.add(e.getId());
+            }
+            if (!elements.isEmpty()) {
+                nextAdd(0, elements.size());
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Insère des e-mails à leur place dans l'ordre des dates décroissantes, en un seul
+     * événement de changement. Les e-mails déjà présents (même identifiant) sont ignorés.
+     *
+     * @param nouveaux Les e-mails à insérer.
+     */
+    public void inserer(List<Email> nouveaux) {
+        beginChange();
+        try {
+            for (Email email : nouveaux) {
+                if (!identifiants.contains(email.getId())) {
+                    add(positionParDate(elements, email), email);
+                }
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Cherche par dichotomie la position d'insertion d'un e-mail dans une liste triée
+     * par date d'envoi décroissante (les e-mails sans date en dernier).
+     *
+     * @param liste La liste triée.
+     * @param email L'e-mail à insérer.
+     * @return L'indice auquel insérer l'e-mail.
+     */
+    static int positionParDate(List<Email> liste, Email email) {
+        long date = email.getDate() != null ? email.getDate().getTime() : Long.MIN_VALUE;
+        int bas = 0;
+        int haut = liste.size();
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            Email e = liste.get(milieu);
+            long d = e.getDate() != null ? e.getDate().getTime() : Long.MIN_VALUE;
+            if (d >= date) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    /**
+     * Marque les éléments actuels appartenant à la plus longue sous-suite déjà rangée
+     * dans l'ordre du nouveau résultat.
+     *
+     * @param positions La position de chaque identifiant dans le nouveau résultat.
+     * @return Pour chaque élément actuel, {@code true} s'il peut rester en place.
+     */
+    private boolean[] plusLongueSousSuiteCroissante(Map<Integer, Integer> positions) {
+        int n = elements.size();
+        int[] suite = new int[n];
+        for (int i = 0; i < n; i++) {
+            suite[i] = positions.get(elements.get(i).getId());
+        }
+
+        int[] finDeLongueur = new int[n];
+        int[] precedent = new int[n];
+        int longueur = 0;
+        for (int i = 0; i < n; i++) {
+            int bas = 0;
+            int haut = longueur;
+            while (bas < haut) {
+                int milieu = (bas + haut) >>> 1;
+                if (suite[finDeLongueur[milieu]] < suite[i]) {
+                    bas = milieu + 1;
+                } else {
+                    haut = milieu;
+                }
+            }
+            precedent[i] = bas > 0 ? finDeLongueur[bas - 1] : -1;
+            finDeLongueur[bas] = i;
+            if (bas == longueur) {
+                longueur++;
+            }
+        }
+
+        boolean[] gardes = new boolean[n];
+        for (int i = longueur > 0 ? finDeLongueur[longueur - 1] : -1; i >= 0; i = precedent[i]) {
+            gardes[i] = true;
+        }
+        return gardes;
+    }
+}
@@ -0,0 +1,69 @@
+package com.monprojet;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Function;
+
+/**
+ * Étage intermédiaire d'un pipeline {@link Flow} : transforme chaque élément reçu et
+ * publie le résultat vers l'étage suivant.
+ * <p>
+ * L'étage ne demande un nouvel élément qu'après avoir publié le précédent, et sa file
+ * de sortie est bornée : lorsque l'étage suivant est plus lent, {@link #submit(Object)}
+ * bloque et la contre-pression remonte jusqu'à la source. Une transformation qui renvoie
+ * {@code null} filtre l'élément.
+ * </p>
+ *
+ * @param <T> Le type des éléments reçus.
+ * @param <R> Le type des éléments publiés.
+ */
+public class EtapeFlux<T, R> extends SubmissionPublisher<R> implements Flow.Processor<T, R> {
+
+    private final String nom;
+    private final Function<T, R> transformation;
+    private Flow.Subscription abonnement;
+
+    /**
+     * Construit un étage de pipeline.
+     *
+     * @param nom            Le nom de l'étage, utilisé dans les messages d'erreur.
+     * @param executor       L'exécuteur qui livre les éléments à l'étage suivant.
+     * @param capacite       La taille maximale de la file vers l'étage suivant.
+     * @param transformation La transformation appliquée à chaque élément.
+     */
+    public EtapeFlux(String nom, Executor executor, int capacite, Function<T, R> transformation) {
+        super(executor, capacite);
+        this.nom = nom;
+        this.transformation = transformation;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.abonnement = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(T element) {
+        try {
+            R resultat = transformation.apply(element);
+            if (resultat != null) {
+                submit(resultat);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Erreur dans l'étage " + nom + " : " + e.getMessage());
+        }
+        abonnement.request(1);
+    }
+
+    @Override
+    public void onError(Throwable erreur) {
+        closeExceptionally(erreur);
+    }
+
+    @Override
+    public void onComplete() {
+        close();
+    }
+}
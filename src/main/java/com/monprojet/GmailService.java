@@ -6,9 +6,9 @@ import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import java.io.IOException;
 import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Date;
 import java.util.Properties;
+import java.util.function.Consumer;
 
 /**
  * Fournit des services pour interagir avec les serveurs Gmail (SMTP et IMAP).
@@ -23,6 +23,9 @@ public class GmailService {
 
     private final String userEmail;
     private final String userPassword;
+    private final Session sessionImap;
+    private Store store;
+    private Folder inbox;
 
     /**
      * Construit une instance du service Gmail.
@@ -33,6 +36,9 @@ public class GmailService {
     public GmailService(String email, String password) {
         this.userEmail = email;
         this.userPassword = password;
+        Properties props = new Properties();
+        props.put("mail.store.protocol", "imaps");
+        this.sessionImap = Session.getInstance(props, null);
     }
 
     /**
@@ -69,56 +75,145 @@ public class GmailService {
     }
 
     /**
-     * Récupère les 20 derniers e-mails de la boîte de réception (INBOX) via IMAP.
-     *
-     * @return Une liste d'objets {@link Email} représentant les messages récupérés.
+     * @return L'adresse e-mail du compte, utilisée comme identifiant de compte.
      */
-    public List<Email> recupererInbox() {
-        List<Email> emailsRecus = new ArrayList<>();
-        Properties props = new Properties();
-        props.put("mail.store.protocol", "imaps");
-
-        try (Store store = Session.getInstance(props, null).getStore("imaps")) {
-            store.connect("imap.gmail.com", userEmail, userPassword);
-
-            try (Folder inbox = store.getFolder("INBOX")) {
-                inbox.open(Folder.READ_ONLY);
+    public String getUserEmail() {
+        return userEmail;
+    }
 
-                int totalMessages = inbox.getMessageCount();
-                int start = Math.max(1, totalMessages - 19);
-                Message[] messages = inbox.getMessages(start, totalMessages);
+    /**
+     * Parcourt une tranche de la boîte de réception (INBOX) via IMAP, du plus récent au plus ancien.
+     * <p>
+     * Une seule requête récupère l'enveloppe (expéditeur, sujet, dates) et la structure MIME
+     * de toute la tranche ; les corps ne sont pas téléchargés ici. Chaque message est transmis
+     * dès que la tranche est décrite, et {@link #analyserMessage(Message)} ne lit ensuite que
+     * la partie texte utile : une pièce jointe volumineuse n'est jamais téléchargée et ne
+     * retarde pas les messages suivants. Un consommateur bloquant ralentit naturellement le
+     * parcours. Le découpage en tranches permet au {@link SyncScheduler} d'alterner entre les
+     * comptes au lieu de laisser une grosse boîte monopoliser une connexion. Toutes les
+     * tranches passent par la même connexion IMAP, ouverte une fois par compte.
+     * </p>
+     *
+     * @param decalage Le nombre de messages les plus récents à ignorer.
+     * @param taille   Le nombre maximal de messages à récupérer.
+     * @param sortie   Reçoit chaque message, encore lié au dossier ouvert.
+     * @return Le nombre de messages transmis.
+     */
+    public synchronized int telechargerInbox(int decalage, int taille, Consumer<Message> sortie) {
+        int recus = 0;
+        try {
+            Folder dossier = ouvrirInbox();
+            int end = dossier.getMessageCount() - decalage;
+            if (end < 1) {
+                return recus;
+            }
+            int start = Math.max(1, end - taille + 1);
+            Message[] messages = dossier.getMessages(start, end);
 
-                System.out.println("Récupération de " + messages.length + " emails depuis Gmail...");
+            FetchProfile profil = new FetchProfile();
+            profil.add(FetchProfile.Item.ENVELOPE);
+            profil.add(FetchProfile.Item.CONTENT_INFO);
+            dossier.fetch(messages, profil);
 
-                for (int i = messages.length - 1; i >= 0; i--) {
-                    Message msg = messages[i];
-                    String expediteur = InternetAddress.toString(msg.getFrom());
-                    String sujet = msg.getSubject();
-                    String contenu = getTextFromMessage(msg);
-                    Timestamp date = new Timestamp(msg.getSentDate().getTime());
+            System.out.println("Récupération de " + messages.length + " emails depuis Gmail (" + userEmail + ")...");
 
-                    Email email = new Email(0, expediteur, userEmail, sujet, contenu, date, "INBOX");
-                    emailsRecus.add(email);
-                }
+            for (int i = messages.length - 1; i >= 0; i--) {
+                sortie.accept(messages[i]);
+                recus++;
             }
         } catch (Exception e) {
             System.err.println("Erreur lors de la récupération des emails : " + e.getMessage());
+            fermer();
+        }
+        return recus;
+    }
+
+    /**
+     * Renvoie la boîte de réception ouverte en lecture seule, en ouvrant la connexion IMAP
+     * au premier appel ou après une coupure. La connexion est ensuite réutilisée par toutes
+     * les tranches : Gmail limite les connexions répétées, et chaque ouverture coûte une
+     * négociation TLS et une authentification.
+     *
+     * @return Le dossier INBOX ouvert.
+     * @throws MessagingException Si la connexion ou l'ouverture échoue.
+     */
+    private Folder ouvrirInbox() throws MessagingException {
+        if (inbox != null && inbox.isOpen() && store.isConnected()) {
+            return inbox;
+        }
+        fermer();
+        store = sessionImap.getStore("imaps");
+        store.connect("imap.gmail.com", userEmail, userPassword);
+        inbox = store.getFolder("INBOX");
+        inbox.open(Folder.READ_ONLY);
+        return inbox;
+    }
+
+    /**
+     * Ferme la connexion IMAP du compte, si elle est ouverte.
+     */
+    public synchronized void fermer() {
+        try {
+            if (inbox != null && inbox.isOpen()) {
+                inbox.close(false);
+            }
+        } catch (MessagingException e) {
+            System.err.println("Erreur lors de la fermeture de la boîte de réception : " + e.getMessage());
+        }
+        try {
+            if (store != null) {
+                store.close();
+            }
+        } catch (MessagingException e) {
+            System.err.println("Erreur lors de la fermeture de la connexion IMAP : " + e.getMessage());
+        }
+        inbox = null;
+        store = null;
+    }
+
+    /**
+     * Analyse un message transmis par {@link #telechargerInbox(int, int, Consumer)}. Seules les
+     * parties texte lues sont téléchargées.
+     * <p>
+     * Un message sans en-tête {@code Date} prend sa date de réception IMAP, toujours présente :
+     * la date reste ainsi identique d'une synchronisation à l'autre et le message n'est pas
+     * enregistré deux fois.
+     * </p>
+     *
+     * @param msg Le message IMAP, dont le dossier est encore ouvert.
+     * @return L'{@link Email} correspondant, classé dans "INBOX", ou {@code null} si le message est illisible.
+     */
+    public Email analyserMessage(Message msg) {
+        try {
+            String expediteur = InternetAddress.toString(msg.getFrom());
+            String sujet = msg.getSubject();
+            String contenu = getTextFromMessage(msg);
+            Date envoi = msg.getSentDate() != null ? msg.getSentDate() : msg.getReceivedDate();
+            Timestamp date = envoi != null ? new Timestamp(envoi.getTime()) : null;
+
+            return new Email(0, userEmail, expediteur, userEmail, sujet, contenu, date, "INBOX");
+        } catch (MessagingException | IOException e) {
+            System.err.println("Erreur lors de l'analyse d'un email : " + e.getMessage());
+            return null;
         }
-        return emailsRecus;
     }
 
     /**
      * Extrait le contenu textuel d'un message, qu'il soit en texte brut ou en multipart.
+     * Également utilisé par {@link MailImporter} pour les messages importés.
      *
      * @param message Le message à traiter.
      * @return Le contenu textuel du message.
      * @throws MessagingException Si une erreur survient lors de l'accès au contenu.
      * @throws IOException        Si une erreur d'entrée/sortie survient.
      */
-    private String getTextFromMessage(Message message) throws MessagingException, IOException {
+    static String getTextFromMessage(Message message) throws MessagingException, IOException {
         if (message.isMimeType("text/plain")) {
             return message.getContent().toString();
         }
+        if (message.isMimeType("text/html")) {
+            return HtmlToText.convertir(message.getContent().toString());
+        }
         if (message.isMimeType("multipart/*")) {
             MimeMultipart mimeMultipart = (MimeMultipart) message.getContent();
             return getTextFromMimeMultipart(mimeMultipart);
@@ -130,7 +225,7 @@ public class GmailService {
      * Parcourt un {@link MimeMultipart} pour en extraire le contenu textuel.
      * <p>
      * Privilégie la partie "text/plain". Si non disponible, utilise la partie
-     * "text/html" en supprimant les balises HTML de manière basique.
+     * "text/html" convertie en texte par {@link HtmlToText}.
      * </p>
      *
      * @param mimeMultipart Le contenu multipart à analyser.
@@ -138,7 +233,7 @@ public class GmailService {
      * @throws MessagingException Si une erreur survient lors de l'accès aux parties.
      * @throws IOException        Si une erreur d'entrée/sortie survient.
      */
-    private String getTextFromMimeMultipart(MimeMultipart mimeMultipart) throws MessagingException, IOException {
+    private static String getTextFromMimeMultipart(MimeMultipart mimeMultipart) throws MessagingException, IOException {
         StringBuilder result = new StringBuilder();
         for (int i = 0; i < mimeMultipart.getCount(); i++) {
             BodyPart bodyPart = mimeMultipart.getBodyPart(i);
@@ -147,8 +242,8 @@ public class GmailService {
                 return bodyPart.getContent().toString();
             } else if (bodyPart.isMimeType("text/html")) {
                 String html = (String) bodyPart.getContent();
-                // Solution simple pour enlever les balises HTML sans dépendance externe
-                result.append(html.replaceAll("<[^>]*>", ""));
+                // Conversion en une passe, sans dépendance externe
+                result.append(HtmlToText.convertir(html));
             }
         }
         return result.toString();
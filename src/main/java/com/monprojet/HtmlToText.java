@@ -0,0 +1,416 @@
+package com.monprojet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Convertit du HTML en texte brut en une seule passe, sans dépendance externe.
+ * <p>
+ * Le convertisseur est un automate qui lit le HTML caractère par caractère : il ne
+ * construit pas d'arbre et ne fait aucun retour arrière, ce qui le rend insensible au
+ * balisage mal formé. Il décode les entités ({@code &nbsp;}, {@code &eacute;}, {@code &#233;}...),
+ * ignore le contenu des balises {@code <script>}, {@code <style>} et {@code <title>},
+ * transforme les éléments de bloc en sauts de ligne, compacte les espaces et s'arrête
+ * dès que la longueur maximale est atteinte, sans lire la suite de l'entrée.
+ * </p>
+ */
+public class HtmlToText {
+
+    /**
+     * Longueur maximale par défaut du texte produit.
+     */
+    public static final int LONGUEUR_MAX = 1_000_000;
+
+    private static final Set<String> BLOCS = Set.of(
+        "p", "div", "table", "tr", "ul", "ol", "dl", "dt", "dd", "blockquote", "pre", "hr",
+        "h1", "h2", "h3", "h4", "h5", "h6", "section", "article", "header", "footer",
+        "nav", "aside", "form", "fieldset", "address", "center", "tbody", "thead", "tfoot");
+
+    private static final Set<String> PARAGRAPHES = Set.of(
+        "p", "h1", "h2", "h3", "h4", "h5", "h6", "table", "blockquote", "pre", "hr");
+
+    /**
+     * Balises dont le contenu n'est pas du texte. {@code head} n'en fait pas partie : sa balise
+     * fermante est facultative, et le reste de l'en-tête ({@code meta}, {@code link}) est vide.
+     */
+    private static final Set<String> IGNORES = Set.of("script", "style", "title");
+
+    private static final Map<String, String> ENTITES = new HashMap<>();
+
+    static {
+        String[] paires = {
+            "amp", "&", "lt", "<", "gt", ">", "quot", "\"", "apos", "'", "nbsp", " ",
+            "eacute", "é", "egrave", "è", "ecirc", "ê", "euml", "ë", "agrave", "à", "acirc", "â",
+            "auml", "ä", "ccedil", "ç", "icirc", "î", "iuml", "ï", "ocirc", "ô", "ouml", "ö",
+            "ugrave", "ù", "ucirc", "û", "uuml", "ü", "oelig", "œ", "aelig", "æ",
+            "Eacute", "É", "Egrave", "È", "Ecirc", "Ê", "Agrave", "À", "Ccedil", "Ç",
+            "laquo", "«", "raquo", "»", "lsquo", "‘", "rsquo", "’", "ldquo", "“", "rdquo", "”",
+            "hellip", "…", "mdash", "—", "ndash", "–", "bull", "•", "middot", "·",
+            "euro", "€", "pound", "£", "copy", "©", "reg", "®", "trade", "™", "deg", "°",
+            "times", "×", "shy", "", "zwnj", "", "zwj", "", "thinsp", " ", "ensp", " ", "emsp", " "
+        };
+        for (int i = 0; i < paires.length; i += 2) {
+            ENTITES.put(paires[i], paires[i + 1]);
+        }
+    }
+
+    private enum Etat { TEXTE, DEBUT_BALISE, NOM_BALISE, ATTRIBUTS, GUILLEMET_SIMPLE, GUILLEMET_DOUBLE,
+                        DECLARATION, COMMENTAIRE, ENTITE, IGNORE }
+
+    private final StringBuilder sortie = new StringBuilder();
+    private final StringBuilder tampon = new StringBuilder();
+    private final int longueurMax;
+    private Etat etat = Etat.TEXTE;
+    private boolean fermante;
+    private boolean espaceEnAttente;
+    private String finIgnore;
+    private int correspondance;
+    private int tirets;
+
+    private HtmlToText(int longueurMax) {
+        this.longueurMax = longueurMax;
+    }
+
+    /**
+     * Convertit une chaîne HTML en texte brut, limité à {@link #LONGUEUR_MAX} caractères.
+     *
+     * @param html Le HTML à convertir.
+     * @return Le texte extrait.
+     */
+    public static String convertir(String html) {
+        return convertir(html, LONGUEUR_MAX);
+    }
+
+    /**
+     * Convertit une chaîne HTML en texte brut.
+     *
+     * @param html        Le HTML à convertir.
+     * @param longueurMax La longueur maximale du texte produit.
+     * @return Le texte extrait.
+     */
+    public static String convertir(String html, int longueurMax) {
+        try {
+            return convertir(new StringReader(html), longueurMax);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Convertit un flux HTML en texte brut. La lecture s'arrête dès que la longueur
+     * maximale est atteinte.
+     *
+     * @param html        Le flux HTML à convertir.
+     * @param longueurMax La longueur maximale du texte produit.
+     * @return Le texte extrait.
+     * @throws IOException Si la lecture du flux échoue.
+     */
+    public static String convertir(Reader html, int longueurMax) throws IOException {
+        HtmlToText convertisseur = new HtmlToText(longueurMax);
+        char[] bloc = new char[8192];
+        int n;
+        while ((n = html.read(bloc)) > 0) {
+            int i = 0;
+            while (i < n) {
+                if (convertisseur.sortie.length() >= longueurMax) {
+                    return convertisseur.terminer();
+                }
+                i = convertisseur.lire(bloc, i, n);
+            }
+        }
+        return convertisseur.terminer();
+    }
+
+    /**
+     * Fait avancer l'automate à partir de {@code bloc[i]}. Les états les plus fréquents
+     * (texte, attributs, contenu ignoré) consomment d'un coup toute une suite de caractères.
+     *
+     * @param bloc Le bloc de caractères lu.
+     * @param i    L'indice du prochain caractère à traiter.
+     * @param n    Le nombre de caractères valides dans le bloc.
+     * @return L'indice du prochain caractère à traiter ; égal à {@code i} si le caractère
+     *         doit être retraité dans le nouvel état.
+     */
+    private int lire(char[] bloc, int i, int n) {
+        char c = bloc[i];
+        switch (etat) {
+            case TEXTE:
+                // Les suites de caractères ordinaires sont copiées d'un bloc
+                int debut = i;
+                while (i < n) {
+                    c = bloc[i];
+                    if (c == '<' || c == '&' || estBlanc(c)) {
+                        if (i > debut) {
+                            espaceAvant();
+                            sortie.append(bloc, debut, i - debut);
+                        }
+                        if (c == '<') {
+                            etat = Etat.DEBUT_BALISE;
+                            tampon.setLength(0);
+                            fermante = false;
+                            return i + 1;
+                        } else if (c == '&') {
+                            etat = Etat.ENTITE;
+                            tampon.setLength(0);
+                            return i + 1;
+                        }
+                        espaceEnAttente = true;
+                        debut = i + 1;
+                        if (sortie.length() >= longueurMax) {
+                            return debut;
+                        }
+                    }
+                    i++;
+                }
+                if (i > debut) {
+                    espaceAvant();
+                    sortie.append(bloc, debut, i - debut);
+                }
+                return i;
+
+            case DEBUT_BALISE:
+                if (c == '/' && !fermante) {
+                    fermante = true;
+                } else if (c == '!' && !fermante) {
+                    etat = Etat.DECLARATION;
+                    tirets = 0;
+                } else if (c == '?' && !fermante) {
+                    // Instruction de traitement (ex : <?xml:namespace prefix=o ?> d'Outlook),
+                    // ignorée jusqu'au « > » comme une déclaration
+                    etat = Etat.DECLARATION;
+                    tirets = 2;
+                } else if (Character.isLetter(c)) {
+                    tampon.append(Character.toLowerCase(c));
+                    etat = Etat.NOM_BALISE;
+                } else {
+                    // Pas une balise : « < » littéral (ex : « a < b »)
+                    etat = Etat.TEXTE;
+                    texte('<');
+                    if (fermante) texte('/');
+                    return i;
+                }
+                return i + 1;
+
+            case NOM_BALISE:
+                if (Character.isLetterOrDigit(c)) {
+                    tampon.append(Character.toLowerCase(c));
+                } else if (c == '>') {
+                    finBalise();
+                } else {
+                    etat = Etat.ATTRIBUTS;
+                }
+                return i + 1;
+
+            case ATTRIBUTS:
+                while (i < n) {
+                    c = bloc[i++];
+                    if (c == '"') {
+                        etat = Etat.GUILLEMET_DOUBLE;
+                        break;
+                    } else if (c == '\'') {
+                        etat = Etat.GUILLEMET_SIMPLE;
+                        break;
+                    } else if (c == '>') {
+                        finBalise();
+                        break;
+                    }
+                }
+                return i;
+
+            case GUILLEMET_DOUBLE:
+            case GUILLEMET_SIMPLE:
+                char guillemet = etat == Etat.GUILLEMET_DOUBLE ? '"' : '\'';
+                while (i < n) {
+                    if (bloc[i++] == guillemet) {
+                        etat = Etat.ATTRIBUTS;
+                        break;
+                    }
+                }
+                return i;
+
+            case DECLARATION:
+                // <!-- commentaire -->, <!DOCTYPE ...> ou <?instruction ?>
+                if (c == '-' && tirets < 2) {
+                    if (++tirets == 2) {
+                        etat = Etat.COMMENTAIRE;
+                        tirets = 0;
+                    }
+                } else if (c == '>') {
+                    etat = Etat.TEXTE;
+                } else {
+                    tirets = 2;
+                }
+                return i + 1;
+
+            case COMMENTAIRE:
+                if (c == '>' && tirets >= 2) {
+                    etat = Etat.TEXTE;
+                } else {
+                    tirets = c == '-' ? tirets + 1 : 0;
+                }
+                return i + 1;
+
+            case ENTITE:
+                if (c == ';') {
+                    etat = Etat.TEXTE;
+                    entite();
+                } else if ((Character.isLetterOrDigit(c) || (c == '#' && tampon.length() == 0)) && tampon.length() < 10) {
+                    tampon.append(c);
+                } else {
+                    // Entité non terminée : on restitue le texte tel quel
+                    etat = Etat.TEXTE;
+                    texte('&');
+                    for (int k = 0; k < tampon.length(); k++) texte(tampon.charAt(k));
+                    return i;
+                }
+                return i + 1;
+
+            case IGNORE:
+                // Recherche insensible à la casse de la balise fermante (« </script »)
+                while (i < n) {
+                    c = bloc[i++];
+                    if (Character.toLowerCase(c) == finIgnore.charAt(correspondance)) {
+                        if (++correspondance == finIgnore.length()) {
+                            etat = Etat.ATTRIBUTS;
+                            tampon.setLength(0);
+                            break;
+                        }
+                    } else {
+                        correspondance = c == '<' ? 1 : 0;
+                    }
+                }
+                return i;
+
+            default:
+                throw new IllegalStateException(etat.name());
+        }
+    }
+
+    /**
+     * Traite une balise complète dont le nom est dans {@code tampon}.
+     */
+    private void finBalise() {
+        etat = Etat.TEXTE;
+        String nom = tampon.toString();
+        if (!fermante && IGNORES.contains(nom)) {
+            etat = Etat.IGNORE;
+            finIgnore = "</" + nom;
+            correspondance = 0;
+        } else if (nom.equals("br")) {
+            sautDeLigne(1);
+        } else if (nom.equals("li")) {
+            sautDeLigne(1);
+            if (!fermante) {
+                sortie.append("- ");
+            }
+        } else if (nom.equals("td") || nom.equals("th")) {
+            espaceEnAttente = true;
+        } else if (PARAGRAPHES.contains(nom)) {
+            sautDeLigne(2);
+        } else if (BLOCS.contains(nom)) {
+            sautDeLigne(1);
+        }
+    }
+
+    /**
+     * Décode l'entité dont le nom est dans {@code tampon}.
+     */
+    private void entite() {
+        String nom = tampon.toString();
+        if (nom.startsWith("#") && nom.length() > 1) {
+            try {
+                int code = nom.charAt(1) == 'x' || nom.charAt(1) == 'X'
+                    ? Integer.parseInt(nom.substring(2), 16)
+                    : Integer.parseInt(nom.substring(1));
+                if (code == 0xA0) {
+                    texte(' ');
+                } else if (Character.isValidCodePoint(code) && code != 0) {
+                    espaceAvant();
+                    sortie.appendCodePoint(code);
+                }
+                return;
+            } catch (NumberFormatException e) {
+                // Entité numérique invalide : restituée telle quelle ci-dessous
+            }
+        }
+        String valeur = ENTITES.get(nom);
+        if (valeur == null) {
+            espaceAvant();
+            sortie.append('&').append(nom).append(';');
+        } else if (valeur.equals(" ")) {
+            texte(' ');
+        } else if (!valeur.isEmpty()) {
+            espaceAvant();
+            sortie.append(valeur);
+        }
+    }
+
+    /**
+     * Ajoute un caractère de texte en compactant les espaces.
+     *
+     * @param c Le caractère à ajouter.
+     */
+    private void texte(char c) {
+        if (estBlanc(c)) {
+            espaceEnAttente = true;
+        } else {
+            espaceAvant();
+            sortie.append(c);
+        }
+    }
+
+    /**
+     * @param c Le caractère à tester.
+     * @return {@code true} pour les blancs et caractères de contrôle, compactés en un seul espace.
+     */
+    private static boolean estBlanc(char c) {
+        return c <= ' ' || c == '\u00A0';
+    }
+
+    /**
+     * Écrit l'espace en attente, sauf en début de ligne.
+     */
+    private void espaceAvant() {
+        if (espaceEnAttente) {
+            espaceEnAttente = false;
+            if (sortie.length() > 0 && sortie.charAt(sortie.length() - 1) != '\n') {
+                sortie.append(' ');
+            }
+        }
+    }
+
+    /**
+     * Termine la ligne courante en garantissant au plus {@code n} sauts de ligne consécutifs.
+     *
+     * @param n Le nombre de sauts de ligne souhaités (1 pour une ligne, 2 pour un paragraphe).
+     */
+    private void sautDeLigne(int n) {
+        espaceEnAttente = false;
+        if (sortie.length() == 0) {
+            return;
+        }
+        int presents = 0;
+        for (int i = sortie.length() - 1; i >= 0 && sortie.charAt(i) == '\n' && presents < n; i--) {
+            presents++;
+        }
+        for (int i = presents; i < n; i++) {
+            sortie.append('\n');
+        }
+    }
+
+    /**
+     * @return Le texte produit, sans blancs de début et de fin, tronqué à la longueur maximale.
+     */
+    private String terminer() {
+        int fin = Math.min(sortie.length(), longueurMax);
+        while (fin > 0 && Character.isWhitespace(sortie.charAt(fin - 1))) {
+            fin--;
+        }
+        return sortie.substring(0, fin);
+    }
+}
@@ -13,6 +13,7 @@ import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 
 import java.util.Properties;
+import java.util.function.Consumer;
 import javax.mail.Session;
 import javax.mail.Store;
 
@@ -22,21 +23,35 @@ import javax.mail.Store;
  * Cette classe est responsable de l'affichage du formulaire de connexion,
  * de la validation des identifiants de l'utilisateur auprès du serveur IMAP de Gmail,
  * et de la transition vers l'application principale en cas de succès.
+ * Elle sert aussi à ajouter un compte supplémentaire depuis la boîte de réception.
  * </p>
  */
 public class LoginView {
 
     private final Stage stage;
+    private final Consumer<GmailService> onConnexion;
     private String sessionEmail;
     private String sessionPassword;
 
     /**
-     * Construit la vue de connexion.
+     * Construit la vue de connexion initiale de l'application.
      *
      * @param stage Le stage principal de l'application JavaFX.
      */
     public LoginView(Stage stage) {
+        this(stage, null);
+    }
+
+    /**
+     * Construit une vue de connexion pour l'ajout d'un compte.
+     *
+     * @param stage       Le stage dans lequel afficher le formulaire.
+     * @param onConnexion Appelé avec le service du nouveau compte après une connexion réussie,
+     *                    ou {@code null} pour lancer l'application principale.
+     */
+    public LoginView(Stage stage, Consumer<GmailService> onConnexion) {
         this.stage = stage;
+        this.onConnexion = onConnexion;
     }
 
     /**
@@ -113,7 +128,12 @@ public class LoginView {
                 javafx.application.Platform.runLater(() -> {
                     this.sessionEmail = email;
                     this.sessionPassword = password;
-                    launchMainApplication();
+                    if (onConnexion != null) {
+                        onConnexion.accept(new GmailService(sessionEmail, sessionPassword));
+                        stage.close();
+                    } else {
+                        launchMainApplication();
+                    }
                 });
 
             } catch (Exception ex) {
@@ -129,14 +149,26 @@ public class LoginView {
     /**
      * Lance l'application principale après une connexion réussie.
      * <p>
-     * Initialise les services nécessaires (GmailService, DBService) et
-     * affiche la vue principale de la boîte de réception.
+     * Initialise les services nécessaires (GmailService, DBService, EmailCache, SyncScheduler,
+     * MailImporter, ContactIndex, RetentionArchives) et affiche la vue principale de la boîte de réception.
      * </p>
      */
     private void launchMainApplication() {
         DBService dbService = new DBService();
+        EmailCache emailCache = new EmailCache(dbService);
+        SyncScheduler syncScheduler = new SyncScheduler(dbService);
+        syncScheduler.ajouterEcouteur(emailCache::ajouter);
+        ContactIndex contactIndex = new ContactIndex();
+        syncScheduler.ajouterEcouteur(contactIndex::ajouter);
+        Thread chargement = new Thread(() -> contactIndex.charger(dbService), "contacts");
+        chargement.setDaemon(true);
+        chargement.start();
+        MailImporter mailImporter = new MailImporter(dbService);
+        RetentionArchives retentionArchives = new RetentionArchives(dbService,
+            Integer.getInteger("mailbox.archives.mois", RetentionArchives.MOIS_CONSERVATION_DEFAUT));
+        retentionArchives.demarrer();
         GmailService gmailService = new GmailService(sessionEmail, sessionPassword);
-        MailBoxView mailBoxView = new MailBoxView(stage, dbService, gmailService, sessionEmail);
+        MailBoxView mailBoxView = new MailBoxView(stage, emailCache, syncScheduler, mailImporter, contactIndex, gmailService);
         mailBoxView.show();
     }
 }
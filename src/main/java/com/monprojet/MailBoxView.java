@@ -1,7 +1,6 @@
 package com.monprojet;
 
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
@@ -9,9 +8,16 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Gère la vue principale de la boîte de réception après la connexion.
@@ -19,40 +25,57 @@ import java.util.List;
  * Cette classe est responsable de l'affichage de l'interface principale,
  * qui inclut la liste des e-mails, le volet de détails, la barre de recherche
  * et les actions de gestion des e-mails (nouveau, supprimer, changer de dossier).
+ * Plusieurs comptes peuvent être connectés en même temps ; la vue affiche
+ * les dossiers du compte sélectionné.
  * </p>
  */
 public class MailBoxView {
 
     private final Stage stage;
-    private final DBService dbService;
-    private final GmailService gmailService;
-    private final String sessionEmail;
-
-    private final ObservableList<Email> masterData = FXCollections.observableArrayList();
+    private final EmailCache emailCache;
+    private final SyncScheduler syncScheduler;
+    private final MailImporter mailImporter;
+    private final ContactIndex contactIndex;
+    private final Map<String, GmailService> comptes = new LinkedHashMap<>();
+    private String compteCourant;
+    private String dossierCourant = "INBOX";
+    private String titreCourant = "Boîte de réception";
+    private String compteAffiche;
+
+    private final EmailListModel masterData = new EmailListModel();
     private final FilteredList<Email> filteredData = new FilteredList<>(masterData, p -> true);
 
+    private ComboBox<String> cbComptes;
     private Label titleLabel;
     private TextField searchField;
     private VBox detailPane;
     private Label lblSujetDetail;
     private Label lblExpediteurDetail;
     private Label lblDateDetail;
-    private TextArea txtMessageDetail;
+    private VisionneuseMessage visionneuse;
     private ListView<Email> emailList;
+    private ProgressBar progressImport;
+    private Label lblImport;
 
     /**
      * Construit la vue de la boîte de réception.
      *
-     * @param stage        Le stage principal de l'application.
-     * @param dbService    Le service pour interagir avec la base de données locale.
-     * @param gmailService Le service pour communiquer avec l'API Gmail.
-     * @param sessionEmail L'adresse e-mail de l'utilisateur connecté.
+     * @param stage         Le stage principal de l'application.
+     * @param emailCache    Le cache des dossiers, placé devant la base de données locale.
+     * @param syncScheduler Le planificateur partagé de synchronisation IMAP.
+     * @param mailImporter  L'importateur d'archives mbox et EML.
+     * @param contactIndex  L'index des correspondants, pour l'autocomplétion des adresses.
+     * @param gmailService  Le service Gmail du premier compte connecté.
      */
-    public MailBoxView(Stage stage, DBService dbService, GmailService gmailService, String sessionEmail) {
+    public MailBoxView(Stage stage, EmailCache emailCache, SyncScheduler syncScheduler, MailImporter mailImporter, ContactIndex contactIndex, GmailService gmailService) {
         this.stage = stage;
-        this.dbService = dbService;
-        this.gmailService = gmailService;
-        this.sessionEmail = sessionEmail;
+        this.emailCache = emailCache;
+        this.syncScheduler = syncScheduler;
+        this.mailImporter = mailImporter;
+        this.contactIndex = contactIndex;
+        this.compteCourant = gmailService.getUserEmail();
+        this.comptes.put(compteCourant, gmailService);
+        syncScheduler.ajouterCompte(gmailService);
     }
 
     /**
@@ -69,13 +92,44 @@ public class MailBoxView {
 
         // --- Logique initiale ---
         setupEventListeners();
+        syncScheduler.ajouterEcouteur(lot ->
+            javafx.application.Platform.runLater(() -> afficherNouveauxEmails(lot)));
+        stage.setOnHidden(e -> syncScheduler.arreter());
         chargerEmails("INBOX", "Boîte de réception");
 
-        stage.setTitle("MailBox - Connecté en tant que " + sessionEmail);
+        stage.setTitle("MailBox - Connecté en tant que " + compteCourant);
         stage.setScene(new Scene(root, 900, 600));
         stage.centerOnScreen();
     }
 
+    /**
+     * Ajoute un compte connecté à la vue et au planificateur de synchronisation,
+     * puis le sélectionne.
+     *
+     * @param gmailService Le service Gmail du nouveau compte.
+     */
+    private void ajouterCompte(GmailService gmailService) {
+        String compte = gmailService.getUserEmail();
+        if (!comptes.containsKey(compte)) {
+            comptes.put(compte, gmailService);
+            syncScheduler.ajouterCompte(gmailService);
+            cbComptes.getItems().add(compte);
+        }
+        cbComptes.getSelectionModel().select(compte);
+    }
+
+    /**
+     * Change le compte affiché et recharge le dossier courant pour ce compte.
+     *
+     * @param compte L'adresse du compte à afficher.
+     */
+    private void changerCompte(String compte) {
+        if (compte == null || compte.equals(compteCourant)) return;
+        compteCourant = compte;
+        stage.setTitle("MailBox - Connecté en tant que " + compteCourant);
+        chargerEmails(dossierCourant, titreCourant);
+    }
+
     /**
      * Crée et retourne le VBox de la barre latérale.
      *
@@ -86,8 +140,15 @@ public class MailBoxView {
         sidebar.setPadding(new Insets(10));
         sidebar.setStyle("-fx-background-color: #f0f0f0; -fx-pref-width: 160px;");
 
-        Label lblUser = new Label("👤 " + sessionEmail);
-        lblUser.setStyle("-fx-font-size: 10px; -fx-text-fill: blue;");
+        cbComptes = new ComboBox<>(FXCollections.observableArrayList(comptes.keySet()));
+        cbComptes.setMaxWidth(Double.MAX_VALUE);
+        cbComptes.setStyle("-fx-font-size: 10px;");
+        cbComptes.getSelectionModel().select(compteCourant);
+        cbComptes.valueProperty().addListener((obs, oldVal, newVal) -> changerCompte(newVal));
+
+        Button btnAjouterCompte = createSidebarButton("👤 Ajouter un compte");
+        btnAjouterCompte.setStyle("-fx-font-size: 10px;");
+        btnAjouterCompte.setOnAction(e -> new LoginView(new Stage(), this::ajouterCompte).show());
 
         Button btnCompose = createSidebarButton("Nouveau");
         btnCompose.setStyle("-fx-background-color: #2196F3; -fx-text-fill: white; -fx-font-weight: bold;");
@@ -107,7 +168,18 @@ public class MailBoxView {
         btnDelete.setStyle("-fx-background-color: #ff4444; -fx-text-fill: white;");
         btnDelete.setOnAction(e -> handleDeleteEmail());
 
-        sidebar.getChildren().addAll(lblUser, new Separator(), btnCompose, new Label("Dossiers"), btnInbox, btnOutbox, btnEnsa, new Label("Actions"), btnDelete);
+        Button btnImportMbox = createSidebarButton("Importer (mbox)");
+        Button btnImportEml = createSidebarButton("Importer (EML)");
+        btnImportMbox.setOnAction(e -> handleImport(false, btnImportMbox, btnImportEml));
+        btnImportEml.setOnAction(e -> handleImport(true, btnImportMbox, btnImportEml));
+
+        progressImport = new ProgressBar(0);
+        progressImport.setMaxWidth(Double.MAX_VALUE);
+        progressImport.setVisible(false);
+        lblImport = new Label();
+        lblImport.setStyle("-fx-font-size: 10px;");
+
+        sidebar.getChildren().addAll(cbComptes, btnAjouterCompte, new Separator(), btnCompose, new Label("Dossiers"), btnInbox, btnOutbox, btnEnsa, new Label("Actions"), btnDelete, btnImportMbox, btnImportEml, progressImport, lblImport);
         return sidebar;
     }
 
@@ -172,12 +244,10 @@ public class MailBoxView {
         lblExpediteurDetail = new Label();
         lblDateDetail = new Label();
         
-        txtMessageDetail = new TextArea();
-        txtMessageDetail.setEditable(false);
-        txtMessageDetail.setWrapText(true);
-        VBox.setVgrow(txtMessageDetail, Priority.ALWAYS);
+        visionneuse = new VisionneuseMessage(emailCache);
+        VBox.setVgrow(visionneuse, Priority.ALWAYS);
         
-        pane.getChildren().addAll(lblSujetDetail, lblExpediteurDetail, lblDateDetail, new Separator(), txtMessageDetail);
+        pane.getChildren().addAll(lblSujetDetail, lblExpediteurDetail, lblDateDetail, new Separator(), visionneuse);
         pane.setVisible(false); // Caché par défaut
         return pane;
     }
@@ -202,45 +272,125 @@ public class MailBoxView {
     /**
      * Gère le rafraîchissement de la boîte de réception.
      * <p>
-     * Lance un thread pour télécharger les nouveaux e-mails depuis Gmail,
-     * les sauvegarde dans la base de données locale s'ils n'existent pas déjà,
-     * puis met à jour l'affichage.
+     * Affiche immédiatement la boîte de réception depuis le cache, puis confie au
+     * {@link SyncScheduler} le téléchargement des nouveaux e-mails du compte courant :
+     * ils apparaissent au fur et à mesure de leur enregistrement, via
+     * {@link #afficherNouveauxEmails(List)}.
      * </p>
      * @param btnInbox Le bouton Inbox pour le désactiver pendant l'opération.
      */
     private void handleInboxRefresh(Button btnInbox) {
+        chargerEmails("INBOX", "Boîte de réception");
         titleLabel.setText("Boîte de réception (Actualisation...)");
         btnInbox.setDisable(true);
 
-        new Thread(() -> {
-            List<Email> nouveauxMails = gmailService.recupererInbox();
-            int compteurAjouts = 0;
-            
-            for (Email mail : nouveauxMails) {
-                if (!dbService.emailExiste(mail.getExpediteur(), mail.getSujet(), mail.getDate())) {
-                    dbService.saveEmail(mail);
-                    compteurAjouts++;
+        String compte = compteCourant;
+        syncScheduler.demanderSync(compte).thenAccept(compteurAjouts ->
+            javafx.application.Platform.runLater(() -> {
+                if (compte.equals(compteAffiche) && "INBOX".equals(dossierCourant)) {
+                    titleLabel.setText(titreCourant);
+                }
+                if (compteurAjouts > 0) {
+                    System.out.println(compteurAjouts + " nouveaux emails synchronisés pour " + compte + " !");
                 }
+                btnInbox.setDisable(false);
+            }));
+    }
+    
+    /**
+     * Insère dans la liste affichée les e-mails qui viennent d'être synchronisés,
+     * au fur et à mesure de leur enregistrement, s'ils appartiennent au dossier affiché.
+     *
+     * @param lot Les e-mails enregistrés par la synchronisation.
+     */
+    private void afficherNouveauxEmails(List<Email> lot) {
+        List<Email> visibles = new ArrayList<>();
+        for (Email email : lot) {
+            if (email.getCompte().equals(compteAffiche) && email.getDossier().equals(dossierCourant)) {
+                visibles.add(email);
             }
-            
-            final int finalCompteur = compteurAjouts;
+        }
+        if (!visibles.isEmpty()) {
+            masterData.inserer(visibles);
+        }
+    }
+
+    /**
+     * Gère l'import d'une archive (fichier mbox ou dossier de fichiers EML) dans le compte courant.
+     * <p>
+     * L'import s'exécute dans un thread séparé ; la barre de progression est mise à jour
+     * après chaque lot enregistré. Un import interrompu reprend à son dernier point de reprise
+     * lorsque la même source est de nouveau choisie.
+     * </p>
+     *
+     * @param dossierEml {@code true} pour importer un dossier EML, {@code false} pour un fichier mbox.
+     * @param boutons    Les boutons d'import, désactivés pendant l'opération.
+     */
+    private void handleImport(boolean dossierEml, Button... boutons) {
+        File source;
+        if (dossierEml) {
+            DirectoryChooser chooser = new DirectoryChooser();
+            chooser.setTitle("Dossier de fichiers EML");
+            source = chooser.showDialog(stage);
+        } else {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Fichier mbox");
+            source = chooser.showOpenDialog(stage);
+        }
+        if (source == null) return;
+
+        String compte = compteCourant;
+        for (Button b : boutons) b.setDisable(true);
+        progressImport.setProgress(0);
+        progressImport.setVisible(true);
+        lblImport.setText("Import en cours...");
+
+        Thread thread = new Thread(() -> {
+            String resultat;
+            try {
+                MailImporter.Progression fin = dossierEml
+                    ? mailImporter.importerDossierEml(source.toPath(), compte, this::afficherProgressionImport)
+                    : mailImporter.importerMbox(source.toPath(), compte, this::afficherProgressionImport);
+                resultat = fin.getImportes() + " emails importés";
+            } catch (IOException ex) {
+                System.err.println("Erreur lors de l'import : " + ex.getMessage());
+                resultat = "Import interrompu";
+            }
+
+            final String finalResultat = resultat;
             javafx.application.Platform.runLater(() -> {
-                chargerEmails("INBOX", "Boîte de réception");
-                if (finalCompteur > 0) {
-                    System.out.println(finalCompteur + " nouveaux emails synchronisés !");
+                emailCache.invaliderCompte(compte);
+                if (compte.equals(compteCourant)) {
+                    rafraichirEmails();
                 }
-                btnInbox.setDisable(false);
+                progressImport.setVisible(false);
+                lblImport.setText(finalResultat);
+                for (Button b : boutons) b.setDisable(false);
             });
-        }).start();
+        }, "import-ui");
+        thread.setDaemon(true);
+        thread.start();
     }
-    
+
+    /**
+     * Affiche l'avancement d'un import. Peut être appelée depuis n'importe quel thread.
+     *
+     * @param progression L'avancement à afficher.
+     */
+    private void afficherProgressionImport(MailImporter.Progression progression) {
+        javafx.application.Platform.runLater(() -> {
+            progressImport.setProgress(progression.getFraction());
+            lblImport.setText(progression.getTraites() + " messages traités");
+        });
+    }
+
     /**
      * Gère la suppression de l'e-mail sélectionné.
      */
     private void handleDeleteEmail() {
         Email selected = emailList.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            dbService.deleteEmail(selected.getId());
+            emailCache.deleteEmail(selected.getId());
             masterData.remove(selected);
             detailPane.setVisible(false);
         }
@@ -248,16 +398,35 @@ public class MailBoxView {
 
     /**
      * Charge et affiche les e-mails pour un dossier spécifié.
+     * <p>
+     * Si le dossier affiché ne change pas, la liste est mise à jour par différence : la
+     * recherche, la sélection et la position de défilement sont conservées. Sinon, son
+     * contenu est remplacé d'un bloc.
+     * </p>
      *
      * @param dossier Le nom du dossier ('INBOX', 'OUTBOX', 'ENSA').
      * @param titre   Le titre à afficher pour ce dossier.
      */
     private void chargerEmails(String dossier, String titre) {
+        boolean memeDossier = dossier.equals(dossierCourant) && compteCourant.equals(compteAffiche);
+        dossierCourant = dossier;
+        titreCourant = titre;
+        compteAffiche = compteCourant;
         titleLabel.setText(titre);
-        searchField.clear();
-        detailPane.setVisible(false);
-        masterData.clear();
-        masterData.addAll(dbService.getEmails(dossier));
+        if (memeDossier) {
+            masterData.reconcilier(emailCache.getEmails(compteCourant, dossier));
+        } else {
+            searchField.clear();
+            detailPane.setVisible(false);
+            masterData.remplacer(emailCache.getEmails(compteCourant, dossier));
+        }
+    }
+
+    /**
+     * Recharge le dossier courant sans toucher à la recherche en cours.
+     */
+    private void rafraichirEmails() {
+        masterData.reconcilier(emailCache.getEmails(compteCourant, dossierCourant));
     }
 
     /**
@@ -270,7 +439,7 @@ public class MailBoxView {
             lblSujetDetail.setText(email.getSujet());
             lblExpediteurDetail.setText("De : " + email.getExpediteur());
             lblDateDetail.setText("Le : " + (email.getDate() != null ? email.getDate().toString() : "Date inconnue"));
-            txtMessageDetail.setText(email.getMessage());
+            visionneuse.afficher(email);
             detailPane.setVisible(true);
         } else {
             detailPane.setVisible(false);
@@ -287,6 +456,7 @@ public class MailBoxView {
         layout.setPadding(new Insets(15));
 
         TextField txtDestinataire = new TextField(); txtDestinataire.setPromptText("Destinataire");
+        activerAutocompletion(txtDestinataire);
         TextField txtSujet = new TextField(); txtSujet.setPromptText("Sujet");
         TextArea txtMessage = new TextArea(); txtMessage.setPromptText("Message...");
 
@@ -296,12 +466,13 @@ public class MailBoxView {
         btnEnvoyer.setOnAction(e -> {
             if (txtDestinataire.getText().isEmpty() || txtSujet.getText().isEmpty()) return;
             
-            // Envoyer via Gmail
-            gmailService.envoyerEmail(txtDestinataire.getText(), txtSujet.getText(), txtMessage.getText());
+            // Envoyer via le compte Gmail courant
+            comptes.get(compteCourant).envoyerEmail(txtDestinataire.getText(), txtSujet.getText(), txtMessage.getText());
+            contactIndex.enregistrer(compteCourant, txtDestinataire.getText(), null);
             
             // Sauvegarder dans la DB locale (dossier OUTBOX)
-            Email mail = new Email(0, sessionEmail, txtDestinataire.getText(), txtSujet.getText(), txtMessage.getText(), null, "OUTBOX");
-            dbService.saveEmail(mail);
+            Email mail = new Email(0, compteCourant, compteCourant, txtDestinataire.getText(), txtSujet.getText(), txtMessage.getText(), null, "OUTBOX");
+            emailCache.saveEmail(mail);
             
             // Rafraîchir la vue si on est sur la boîte d'envoi
             if (titleLabel.getText().contains("d'envoi")) {
@@ -314,4 +485,40 @@ public class MailBoxView {
         stage.setScene(new Scene(layout, 400, 450));
         stage.show();
     }
+
+    /**
+     * Propose les correspondants du compte courant pendant la saisie d'une liste d'adresses.
+     * Seule l'adresse en cours de saisie, après la dernière virgule, est complétée.
+     *
+     * @param champ Le champ des destinataires.
+     */
+    private void activerAutocompletion(TextField champ) {
+        ContextMenu suggestions = new ContextMenu();
+        champ.textProperty().addListener((obs, ancien, texte) -> {
+            if (!champ.isFocused()) return;
+            int virgule = texte.lastIndexOf(',');
+            String debut = texte.substring(0, virgule + 1);
+            List<String> trouves = contactIndex.rechercher(compteCourant, texte.substring(virgule + 1));
+            if (trouves.isEmpty()) {
+                suggestions.hide();
+                return;
+            }
+            List<MenuItem> items = new ArrayList<>();
+            for (String contact : trouves) {
+                MenuItem item = new MenuItem(contact);
+                item.setOnAction(e -> {
+                    champ.setText(debut + (debut.isEmpty() ? "" : " ") + contact + ", ");
+                    champ.positionCaret(champ.getText().length());
+                });
+                items.add(item);
+            }
+            suggestions.getItems().setAll(items);
+            if (!suggestions.isShowing()) {
+                suggestions.show(champ, javafx.geometry.Side.BOTTOM, 0, 0);
+            }
+        });
+        champ.focusedProperty().addListener((obs, avait, a) -> {
+            if (!a) suggestions.hide();
+        });
+    }
 }
@@ -0,0 +1,664 @@
+package com.monprojet;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MailDateFormat;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.SharedFileInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Importe des archives de messagerie (fichiers mbox et dossiers de fichiers EML) dans la base locale.
+ * <p>
+ * L'import est un pipeline en trois étages reliés par des files bornées : un lecteur
+ * découpe la source message par message sans jamais la charger entièrement, plusieurs
+ * analyseurs décodent les messages MIME en parallèle, et un écrivain unique enregistre
+ * les résultats par lots via {@link DBService#saveEmails(List)}, qui ignore les doublons.
+ * La mémoire occupée par les messages bruts est bornée en octets : un message mbox de plus
+ * de {@value #TAILLE_MAX_EN_MEMOIRE} octets est recopié dans un fichier temporaire, lu
+ * ensuite comme un fichier EML, et les autres ne peuvent dépasser ensemble
+ * {@value #OCTETS_MAX_EN_MEMOIRE} octets en attente d'analyse. Après chaque lot, un point de reprise est enregistré : un import interrompu reprend
+ * là où il s'était arrêté.
+ * </p>
+ */
+public class MailImporter {
+
+    /**
+     * Nombre d'e-mails enregistrés par transaction.
+     */
+    private static final int TAILLE_LOT = 500;
+
+    /**
+     * Capacité des files entre les étages du pipeline.
+     */
+    private static final int CAPACITE_FILE = 256;
+
+    /**
+     * Taille au-delà de laquelle un message mbox est recopié dans un fichier temporaire
+     * plutôt que gardé en mémoire.
+     */
+    private static final int TAILLE_MAX_EN_MEMOIRE = 1 << 20;
+
+    /**
+     * Nombre total d'octets de messages bruts gardés en mémoire entre la lecture et l'analyse.
+     */
+    private static final int OCTETS_MAX_EN_MEMOIRE = 32 << 20;
+
+    /**
+     * Nombre de threads d'analyse MIME.
+     */
+    private static final int NB_ANALYSEURS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /**
+     * Date d'une ligne de séparation mbox, au format {@code asctime} éventuellement suivi
+     * d'un fuseau : {@code From adresse Sat Jan  3 01:05:34 [+0000] 1996}.
+     */
+    private static final Pattern DATE_SEPARATEUR = Pattern.compile(
+        "^From \\S+\\s+\\w{3}\\s+(\\w{3})\\s+(\\d{1,2})\\s+(\\d{1,2}):(\\d{2})(?::(\\d{2}))?\\s+(?:([+-]\\d{4})\\s+)?(\\d{4})");
+
+    private static final String MOIS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    private static final Brut FIN_LECTURE = new Brut(-1, -1, null, null, false, null);
+    private static final Analyse FIN_ANALYSE = new Analyse(-1, -1, null);
+
+    private final DBService dbService;
+    private final Session session = Session.getInstance(new Properties());
+
+    /**
+     * Construit l'importateur.
+     *
+     * @param dbService Le service utilisé pour enregistrer les e-mails et les points de reprise.
+     */
+    public MailImporter(DBService dbService) {
+        this.dbService = dbService;
+    }
+
+    /**
+     * Importe un fichier mbox dans un compte.
+     * <p>
+     * Le point de reprise est la position en octets du premier message non encore enregistré.
+     * </p>
+     *
+     * @param fichier Le fichier mbox à importer.
+     * @param compte  L'adresse du compte cible.
+     * @param suivi   Reçoit l'avancement après chaque lot, depuis le thread d'import.
+     * @return L'avancement final.
+     * @throws IOException Si le fichier ne peut pas être lu ou si l'enregistrement échoue.
+     */
+    public Progression importerMbox(Path fichier, String compte, Consumer<Progression> suivi) throws IOException {
+        String source = fichier.toAbsolutePath().toString();
+        long debut = dbService.getCheckpoint(compte, source);
+        long total = Files.size(fichier);
+        return executer(compte, source, debut, total, (sortie, memoire) -> lireMbox(fichier, debut, sortie, memoire), suivi);
+    }
+
+    /**
+     * Importe tous les fichiers {@code .eml} d'un dossier (et de ses sous-dossiers) dans un compte.
+     * <p>
+     * Les fichiers sont traités par ordre de chemin ; le point de reprise est le nombre
+     * de fichiers déjà enregistrés.
+     * </p>
+     *
+     * @param dossier Le dossier à importer.
+     * @param compte  L'adresse du compte cible.
+     * @param suivi   Reçoit l'avancement après chaque lot, depuis le thread d'import.
+     * @return L'avancement final.
+     * @throws IOException Si le dossier ne peut pas être parcouru ou si l'enregistrement échoue.
+     */
+    public Progression importerDossierEml(Path dossier, String compte, Consumer<Progression> suivi) throws IOException {
+        String source = dossier.toAbsolutePath().toString();
+        List<Path> fichiers;
+        try (Stream<Path> chemins = Files.walk(dossier)) {
+            fichiers = chemins
+                .filter(Files::isRegularFile)
+                .filter(p -> p.getFileName().toString().toLowerCase().endsWith(".eml"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        long debut = dbService.getCheckpoint(compte, source);
+        return executer(compte, source, debut, fichiers.size(), (sortie, memoire) -> {
+            for (int i = (int) debut; i < fichiers.size(); i++) {
+                sortie.put(new Brut(i - debut, i + 1, null, fichiers.get(i), false, null));
+            }
+        }, suivi);
+    }
+
+    /**
+     * Exécute le pipeline lecture → analyse → écriture jusqu'à épuisement de la source.
+     *
+     * @param compte  L'adresse du compte cible.
+     * @param source  L'identifiant de la source pour les points de reprise.
+     * @param debut   La position de reprise.
+     * @param total   La position finale attendue.
+     * @param lecteur Le producteur de messages bruts.
+     * @param suivi   Reçoit l'avancement après chaque lot.
+     * @return L'avancement final.
+     * @throws IOException Si la lecture ou l'enregistrement échoue.
+     */
+    private Progression executer(String compte, String source, long debut, long total,
+                                 Lecteur lecteur, Consumer<Progression> suivi) throws IOException {
+        BlockingQueue<Brut> bruts = new ArrayBlockingQueue<>(CAPACITE_FILE);
+        BlockingQueue<Analyse> analyses = new ArrayBlockingQueue<>(CAPACITE_FILE);
+        Semaphore memoire = new Semaphore(OCTETS_MAX_EN_MEMOIRE);
+        IOException[] erreurLecture = new IOException[1];
+
+        ExecutorService pool = Executors.newFixedThreadPool(NB_ANALYSEURS + 1, r -> {
+            Thread t = new Thread(r, "import");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            pool.execute(() -> {
+                try {
+                    lecteur.lire(bruts, memoire);
+                } catch (IOException e) {
+                    erreurLecture[0] = e;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    for (int i = 0; i < NB_ANALYSEURS; i++) {
+                        bruts.put(FIN_LECTURE);
+                    }
+                } catch (InterruptedException ignored) {
+                    // Import annulé
+                }
+            });
+            for (int i = 0; i < NB_ANALYSEURS; i++) {
+                pool.execute(() -> analyser(compte, bruts, analyses, memoire));
+            }
+
+            Progression progression = ecrire(compte, source, debut, total, analyses, suivi);
+            if (erreurLecture[0] != null) {
+                throw erreurLecture[0];
+            }
+            return progression;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrompu", e);
+        } finally {
+            pool.shutdownNow();
+            for (Brut brut : bruts) {
+                brut.supprimerTemporaire();
+            }
+        }
+    }
+
+    /**
+     * Étage d'écriture : regroupe les messages analysés en lots, les enregistre et
+     * fait avancer le point de reprise jusqu'au dernier message dont tous les précédents
+     * sont enregistrés.
+     */
+    private Progression ecrire(String compte, String source, long debut, long total,
+                               BlockingQueue<Analyse> analyses, Consumer<Progression> suivi)
+            throws InterruptedException, IOException {
+        TreeMap<Long, Long> termines = new TreeMap<>();
+        List<Analyse> lot = new ArrayList<>(TAILLE_LOT);
+        long prochain = 0;
+        long position = debut;
+        long traites = 0;
+        long importes = 0;
+        int analyseursFinis = 0;
+
+        while (analyseursFinis < NB_ANALYSEURS) {
+            Analyse a = analyses.take();
+            if (a == FIN_ANALYSE) {
+                analyseursFinis++;
+            } else {
+                lot.add(a);
+            }
+            if (lot.isEmpty() || (lot.size() < TAILLE_LOT && analyseursFinis < NB_ANALYSEURS)) {
+                continue;
+            }
+
+            List<Email> emails = new ArrayList<>(lot.size());
+            for (Analyse analyse : lot) {
+                if (analyse.email != null) {
+                    emails.add(analyse.email);
+                }
+            }
+            int inseres = emails.isEmpty() ? 0 : dbService.saveEmails(emails);
+            if (inseres < 0) {
+                throw new IOException("Échec de l'enregistrement d'un lot, import suspendu à la position " + position);
+            }
+
+            for (Analyse analyse : lot) {
+                termines.put(analyse.seq, analyse.fin);
+            }
+            while (termines.containsKey(prochain)) {
+                position = termines.remove(prochain);
+                prochain++;
+            }
+            dbService.saveCheckpoint(compte, source, position);
+
+            traites += lot.size();
+            importes += inseres;
+            lot.clear();
+            suivi.accept(new Progression(traites, importes, position, total));
+        }
+        return new Progression(traites, importes, position, total);
+    }
+
+    /**
+     * Étage d'analyse : décode chaque message brut en {@link Email}. Un message illisible
+     * est transmis sans e-mail pour que le point de reprise puisse le dépasser. Les fichiers
+     * sont lus via un {@link SharedFileInputStream}, que {@link MimeMessage} parcourt sans
+     * recopier les pièces jointes en mémoire.
+     */
+    private void analyser(String compte, BlockingQueue<Brut> bruts, BlockingQueue<Analyse> analyses, Semaphore memoire) {
+        try {
+            while (true) {
+                Brut brut = bruts.take();
+                if (brut == FIN_LECTURE) {
+                    analyses.put(FIN_ANALYSE);
+                    return;
+                }
+                Email email = null;
+                try (InputStream in = brut.octets != null
+                        ? new ByteArrayInputStream(brut.octets)
+                        : new SharedFileInputStream(brut.fichier.toFile())) {
+                    email = versEmail(compte, new MimeMessage(session, in), brut.separateur);
+                } catch (Exception e) {
+                    System.err.println("Message ignoré lors de l'import : " + e.getMessage());
+                } finally {
+                    if (brut.octets != null) {
+                        memoire.release(brut.octets.length);
+                    }
+                    brut.supprimerTemporaire();
+                }
+                analyses.put(new Analyse(brut.seq, brut.fin, email));
+            }
+        } catch (InterruptedException ignored) {
+            // Import annulé
+        }
+    }
+
+    /**
+     * Convertit un message MIME importé en {@link Email}. Les messages envoyés par le compte
+     * lui-même sont classés dans la boîte d'envoi.
+     * <p>
+     * Sans en-tête {@code Date}, la date retenue est celle du dernier en-tête {@code Received},
+     * à défaut celle de la ligne de séparation mbox : ces dates ne changent pas d'un import à
+     * l'autre, ce qui garde l'empreinte stable et distingue les messages sans date.
+     * </p>
+     *
+     * @param separateur La ligne {@code "From "} qui précédait le message dans le mbox, ou {@code null}.
+     */
+    private Email versEmail(String compte, MimeMessage msg, String separateur) throws Exception {
+        Address[] de = msg.getFrom();
+        Address[] a = msg.getRecipients(Message.RecipientType.TO);
+        String expediteur = de != null ? InternetAddress.toString(de) : "";
+        String destinataire = a != null ? InternetAddress.toString(a) : compte;
+        Date envoi = msg.getSentDate();
+        if (envoi == null) {
+            envoi = dateReception(msg);
+        }
+        if (envoi == null) {
+            envoi = dateSeparateur(separateur);
+        }
+        Timestamp date = new Timestamp(envoi != null ? envoi.getTime() : 0);
+        String dossier = expediteur.toLowerCase().contains(compte.toLowerCase()) ? "OUTBOX" : "INBOX";
+        return new Email(0, compte, expediteur, destinataire, msg.getSubject(), GmailService.getTextFromMessage(msg), date, dossier);
+    }
+
+    /**
+     * @return La date du plus récent en-tête {@code Received} lisible (le premier du message), ou {@code null}.
+     */
+    private static Date dateReception(MimeMessage msg) throws MessagingException {
+        String[] recus = msg.getHeader("Received");
+        if (recus == null) {
+            return null;
+        }
+        for (String recu : recus) {
+            int pointVirgule = recu.lastIndexOf(';');
+            if (pointVirgule < 0) {
+                continue;
+            }
+            try {
+                return new MailDateFormat().parse(recu.substring(pointVirgule + 1).replaceAll("\\s+", " ").trim());
+            } catch (ParseException e) {
+                // En-tête mal formé : on essaie le suivant
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return La date de la ligne de séparation mbox, en UTC si elle ne précise pas de fuseau,
+     *         ou {@code null} si elle est absente ou illisible.
+     */
+    private static Date dateSeparateur(String separateur) {
+        if (separateur == null) {
+            return null;
+        }
+        Matcher m = DATE_SEPARATEUR.matcher(separateur);
+        int mois = m.find() ? MOIS.indexOf(m.group(1)) : -1;
+        if (mois < 0 || mois % 3 != 0) {
+            return null;
+        }
+        try {
+            LocalDateTime date = LocalDateTime.of(Integer.parseInt(m.group(7)), mois / 3 + 1,
+                Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)),
+                m.group(5) != null ? Integer.parseInt(m.group(5)) : 0);
+            ZoneOffset fuseau = m.group(6) != null ? ZoneOffset.of(m.group(6)) : ZoneOffset.UTC;
+            return Date.from(date.toInstant(fuseau));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Étage de lecture d'un mbox : découpe le fichier sur les lignes {@code "From "} précédées
+     * d'une ligne vide, sans inclure ces lignes de séparation, et retire l'échappement mboxrd
+     * ({@code ">From "}) des lignes du corps. Un message qui dépasse
+     * {@value #TAILLE_MAX_EN_MEMOIRE} octets continue d'être lu dans un fichier temporaire ;
+     * les autres réservent leur taille dans {@code memoire} avant d'être transmis.
+     */
+    private static void lireMbox(Path fichier, long debut, BlockingQueue<Brut> sortie, Semaphore memoire)
+            throws IOException, InterruptedException {
+        Tampon courant = new Tampon(1 << 16);
+        try (InputStream in = Files.newInputStream(fichier)) {
+            long aSauter = debut;
+            while (aSauter > 0) {
+                long sautes = in.skip(aSauter);
+                if (sautes <= 0) {
+                    return;
+                }
+                aSauter -= sautes;
+            }
+
+            LecteurLignes lignes = new LecteurLignes(in, debut);
+            boolean ligneVidePrecedente = true;
+            boolean dansMessage = false;
+            long seq = 0;
+
+            long debutLigne;
+            while ((debutLigne = lignes.suivante()) >= 0) {
+                byte[] ligne = lignes.octets;
+                int longueur = lignes.longueur;
+                if (ligneVidePrecedente && commencePar(ligne, 0, longueur, "From ")) {
+                    if (dansMessage) {
+                        transmettre(sortie, courant.transmettre(seq++, debutLigne, memoire));
+                    }
+                    courant.separateur = new String(ligne, 0, longueur, StandardCharsets.ISO_8859_1).trim();
+                    dansMessage = true;
+                } else if (dansMessage) {
+                    int depart = estFromEchappe(ligne, longueur) ? 1 : 0;
+                    courant.ajouter(ligne, depart, longueur - depart);
+                }
+                ligneVidePrecedente = longueur == 0 || (longueur == 1 && ligne[0] == '\n')
+                    || (longueur == 2 && ligne[0] == '\r' && ligne[1] == '\n');
+            }
+            if (dansMessage) {
+                transmettre(sortie, courant.transmettre(seq, lignes.position, memoire));
+            }
+        } finally {
+            courant.abandonner();
+        }
+    }
+
+    private static void transmettre(BlockingQueue<Brut> sortie, Brut brut) throws InterruptedException {
+        try {
+            sortie.put(brut);
+        } catch (InterruptedException e) {
+            brut.supprimerTemporaire();
+            throw e;
+        }
+    }
+
+    private static boolean commencePar(byte[] ligne, int depart, int longueur, String prefixe) {
+        if (longueur - depart < prefixe.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefixe.length(); i++) {
+            if (ligne[depart + i] != prefixe.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean estFromEchappe(byte[] ligne, int longueur) {
+        int i = 0;
+        while (i < longueur && ligne[i] == '>') {
+            i++;
+        }
+        return i > 0 && commencePar(ligne, i, longueur, "From ");
+    }
+
+    /**
+     * Producteur de messages bruts pour le pipeline d'import.
+     */
+    @FunctionalInterface
+    private interface Lecteur {
+        void lire(BlockingQueue<Brut> sortie, Semaphore memoire) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Lit un flux ligne par ligne (fin de ligne incluse) dans un tampon réutilisé,
+     * en suivant la position en octets.
+     */
+    private static class LecteurLignes {
+        private final InputStream in;
+        private final byte[] tampon = new byte[1 << 16];
+        private int pos;
+        private int lim;
+        private byte[] octets = new byte[1024];
+        private int longueur;
+        private long position;
+
+        LecteurLignes(InputStream in, long position) {
+            this.in = in;
+            this.position = position;
+        }
+
+        /**
+         * @return La position de début de la ligne lue, ou -1 en fin de flux.
+         */
+        long suivante() throws IOException {
+            long debut = position;
+            longueur = 0;
+            while (true) {
+                if (pos == lim) {
+                    lim = in.read(tampon, 0, tampon.length);
+                    pos = 0;
+                    if (lim <= 0) {
+                        lim = 0;
+                        return longueur > 0 ? debut : -1;
+                    }
+                }
+                int fin = pos;
+                while (fin < lim && tampon[fin] != '\n') {
+                    fin++;
+                }
+                boolean complete = fin < lim;
+                int n = (complete ? fin + 1 : fin) - pos;
+                if (longueur + n > octets.length) {
+                    octets = Arrays.copyOf(octets, Math.max(octets.length * 2, longueur + n));
+                }
+                System.arraycopy(tampon, pos, octets, longueur, n);
+                longueur += n;
+                pos += n;
+                position += n;
+                if (complete) {
+                    return debut;
+                }
+            }
+        }
+    }
+
+    /**
+     * Contenu du message mbox en cours de lecture, réutilisé d'un message à l'autre : en
+     * mémoire jusqu'à {@value #TAILLE_MAX_EN_MEMOIRE} octets, puis dans un fichier temporaire.
+     */
+    private static class Tampon {
+        private byte[] octets;
+        private int taille;
+        private Path temporaire;
+        private OutputStream debordement;
+        private String separateur;
+
+        Tampon(int capacite) {
+            this.octets = new byte[capacite];
+        }
+
+        void ajouter(byte[] source, int depart, int n) throws IOException {
+            if (debordement == null && taille + n > TAILLE_MAX_EN_MEMOIRE) {
+                temporaire = Files.createTempFile("mailbox-import", ".eml");
+                debordement = new BufferedOutputStream(Files.newOutputStream(temporaire), 1 << 16);
+                debordement.write(octets, 0, taille);
+                taille = 0;
+            }
+            if (debordement != null) {
+                debordement.write(source, depart, n);
+                return;
+            }
+            if (taille + n > octets.length) {
+                octets = Arrays.copyOf(octets, Math.max(octets.length * 2, taille + n));
+            }
+            System.arraycopy(source, depart, octets, taille, n);
+            taille += n;
+        }
+
+        /**
+         * Termine le message courant et vide le tampon pour le suivant. Un message en mémoire
+         * attend que sa taille puisse être réservée dans {@code memoire}.
+         */
+        Brut transmettre(long seq, long fin, Semaphore memoire) throws IOException, InterruptedException {
+            Brut brut;
+            if (debordement != null) {
+                debordement.close();
+                brut = new Brut(seq, fin, null, temporaire, true, separateur);
+                debordement = null;
+                temporaire = null;
+            } else {
+                memoire.acquire(taille);
+                brut = new Brut(seq, fin, Arrays.copyOf(octets, taille), null, false, separateur);
+            }
+            taille = 0;
+            return brut;
+        }
+
+        /**
+         * Supprime le fichier temporaire d'un message dont la lecture a été interrompue.
+         */
+        void abandonner() throws IOException {
+            if (debordement != null) {
+                debordement.close();
+                Files.deleteIfExists(temporaire);
+                debordement = null;
+            }
+        }
+    }
+
+    /**
+     * Message brut lu depuis la source : soit ses octets (mbox), soit son fichier (EML, ou
+     * fichier temporaire pour un gros message mbox).
+     */
+    private static class Brut {
+        private final long seq;
+        private final long fin;
+        private final byte[] octets;
+        private final Path fichier;
+        private final boolean temporaire;
+        private final String separateur;
+
+        Brut(long seq, long fin, byte[] octets, Path fichier, boolean temporaire, String separateur) {
+            this.seq = seq;
+            this.fin = fin;
+            this.octets = octets;
+            this.fichier = fichier;
+            this.temporaire = temporaire;
+            this.separateur = separateur;
+        }
+
+        void supprimerTemporaire() {
+            if (temporaire) {
+                try {
+                    Files.deleteIfExists(fichier);
+                } catch (IOException e) {
+                    System.err.println("Impossible de supprimer " + fichier + " : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Message analysé, ou {@code email} nul si le message était illisible.
+     */
+    private static class Analyse {
+        private final long seq;
+        private final long fin;
+        private final Email email;
+
+        Analyse(long seq, long fin, Email email) {
+            this.seq = seq;
+            this.fin = fin;
+            this.email = email;
+        }
+    }
+
+    /**
+     * Avancement d'un import.
+     */
+    public static class Progression {
+        private final long traites;
+        private final long importes;
+        private final long position;
+        private final long total;
+
+        Progression(long traites, long importes, long position, long total) {
+            this.traites = traites;
+            this.importes = importes;
+            this.position = position;
+            this.total = total;
+        }
+
+        /**
+         * @return Le nombre de messages traités pendant cette exécution.
+         */
+        public long getTraites() { return traites; }
+
+        /**
+         * @return Le nombre de messages réellement ajoutés (hors doublons et messages illisibles).
+         */
+        public long getImportes() { return importes; }
+
+        /**
+         * @return La fraction de la source déjà importée, entre 0 et 1.
+         */
+        public double getFraction() {
+            return total <= 0 ? 1 : Math.min(1, (double) position / total);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.monprojet;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applique la durée de conservation de la table {@code archives}, en arrière-plan.
+ * <p>
+ * La table est partitionnée par mois de suppression. À chaque passage, la tâche crée
+ * à l'avance les partitions des prochains mois en les détachant de la partition
+ * {@code MAXVALUE}, puis supprime d'un bloc les partitions entièrement expirées.
+ * Détacher une partition recopie les lignes de la partition {@code MAXVALUE} : créées
+ * {@value #MOIS_ANTICIPES} mois à l'avance, les partitions la laissent vide en temps normal.
+ * Si elle contient trop de lignes (base créée avec un ancien schéma, application restée
+ * arrêtée plusieurs mois), la création est reportée plutôt que de bloquer le trigger
+ * d'archivage pendant la copie. Les archives expirées restant dans une partition plus
+ * récente sont supprimées par petits lots espacés, pour ne jamais bloquer longtemps les
+ * suppressions d'e-mails qui alimentent la table.
+ * </p>
+ */
+public class RetentionArchives {
+
+    /**
+     * Durée de conservation par défaut, en mois.
+     */
+    public static final int MOIS_CONSERVATION_DEFAUT = 12;
+
+    /**
+     * Nombre de mois à venir dont la partition est créée à l'avance.
+     */
+    private static final int MOIS_ANTICIPES = 3;
+
+    /**
+     * Nombre maximal de lignes que la partition {@code MAXVALUE} peut contenir pour être
+     * réorganisée : au-delà, la copie bloquerait les suppressions trop longtemps.
+     */
+    private static final long MAX_LIGNES_REORGANISATION = 5000;
+
+    /**
+     * Nombre maximal d'archives supprimées par requête.
+     */
+    private static final int TAILLE_LOT = 1000;
+
+    /**
+     * Pause entre deux lots, en millisecondes.
+     */
+    private static final long PAUSE_ENTRE_LOTS = 200;
+
+    /**
+     * Délai avant le premier passage, en minutes.
+     */
+    private static final long DELAI_INITIAL = 1;
+
+    /**
+     * Délai entre deux passages, en minutes.
+     */
+    private static final long PERIODE = 6 * 60;
+
+    /**
+     * Valeur de {@code TO_DAYS('1970-01-01')} en MySQL.
+     */
+    private static final long JOURS_EPOQUE = 719_528;
+
+    private static final DateTimeFormatter FORMAT_PARTITION = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final DBService dbService;
+    private final int moisConservation;
+    private final ScheduledExecutorService minuteur = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "retention-archives");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * Construit la tâche de conservation.
+     *
+     * @param dbService        Le service de base de données.
+     * @param moisConservation La durée de conservation des archives, en mois entiers ;
+     *                         0 ou moins pour les conserver indéfiniment.
+     */
+    public RetentionArchives(DBService dbService, int moisConservation) {
+        this.dbService = dbService;
+        this.moisConservation = moisConservation;
+    }
+
+    /**
+     * Planifie les passages périodiques.
+     */
+    public void demarrer() {
+        minuteur.scheduleWithFixedDelay(this::executerPassage, DELAI_INITIAL, PERIODE, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Effectue un passage complet ; une erreur n'interrompt pas les passages suivants.
+     */
+    private void executerPassage() {
+        try {
+            maintenir(LocalDate.now());
+        } catch (RuntimeException e) {
+            System.err.println("Erreur lors de la maintenance des archives : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prépare les partitions à venir et supprime les archives expirées.
+     *
+     * @param aujourdhui La date du jour.
+     */
+    private void maintenir(LocalDate aujourdhui) {
+        LocalDate moisCourant = aujourdhui.withDayOfMonth(1);
+        LocalDate limite = moisCourant.minusMonths(moisConservation);
+        Map<String, Long> partitions = dbService.getPartitionsArchives();
+
+        String futur = null;
+        long derniereBorne = Long.MIN_VALUE;
+        for (Map.Entry<String, Long> partition : partitions.entrySet()) {
+            if (partition.getValue() == Long.MAX_VALUE) {
+                futur = partition.getKey();
+            } else {
+                derniereBorne = Math.max(derniereBorne, partition.getValue());
+            }
+        }
+
+        if (futur != null) {
+            Map<String, LocalDate> nouvelles = new LinkedHashMap<>();
+            for (int i = 1; i <= MOIS_ANTICIPES + 1; i++) {
+                LocalDate borne = moisCourant.plusMonths(i);
+                if (enJours(borne) > derniereBorne) {
+                    nouvelles.put(borne.minusMonths(1).format(FORMAT_PARTITION), borne);
+                }
+            }
+            if (!nouvelles.isEmpty()) {
+                long lignes = dbService.compterArchivesPartition(futur, MAX_LIGNES_REORGANISATION);
+                if (lignes > MAX_LIGNES_REORGANISATION) {
+                    System.err.println("Partition " + futur + " trop remplie pour être réorganisée sans bloquer "
+                            + "l'archivage : création des partitions " + nouvelles.keySet() + " reportée.");
+                } else if (lignes >= 0) {
+                    dbService.creerPartitionsArchives(nouvelles, futur);
+                }
+            }
+        }
+
+        if (moisConservation <= 0) {
+            return;
+        }
+        for (Map.Entry<String, Long> partition : partitions.entrySet()) {
+            if (partition.getValue() <= enJours(limite)) {
+                dbService.supprimerPartitionArchives(partition.getKey());
+            }
+        }
+        purgerParLots(Timestamp.valueOf(limite.atStartOfDay()));
+    }
+
+    /**
+     * Supprime les archives antérieures à une date par lots de {@value #TAILLE_LOT}.
+     *
+     * @param avant La date en dessous de laquelle une archive a expiré.
+     */
+    private void purgerParLots(Timestamp avant) {
+        while (!Thread.currentThread().isInterrupted()) {
+            int supprimees = dbService.purgerArchives(avant, TAILLE_LOT);
+            if (supprimees < TAILLE_LOT) {
+                return;
+            }
+            try {
+                Thread.sleep(PAUSE_ENTRE_LOTS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static long enJours(LocalDate date) {
+        return date.toEpochDay() + JOURS_EPOQUE;
+    }
+}
@@ -0,0 +1,177 @@
+package com.monprojet;
+
+import javax.mail.Message;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline de synchronisation d'une tranche de boîte de réception.
+ * <p>
+ * La tranche traverse quatre étages reliés par {@link java.util.concurrent.Flow} :
+ * description IMAP (enveloppes et structure MIME), analyse avec lecture de la seule
+ * partie texte, enregistrement en base et publication. Chaque
+ * étage travaille dès que le précédent lui a transmis un message, avec des files
+ * bornées et une contre-pression jusqu'au téléchargement. Les e-mails enregistrés
+ * sont publiés par petits lots au fur et à mesure : le premier nouveau message
+ * apparaît sans attendre la fin de la tranche.
+ * </p>
+ */
+public class SyncPipeline {
+
+    /**
+     * Taille maximale de la file entre deux étages.
+     */
+    private static final int CAPACITE = 16;
+
+    /**
+     * Nombre maximal d'e-mails publiés en un seul lot.
+     */
+    private static final int TAILLE_LOT = 10;
+
+    private final DBService dbService;
+    private final Semaphore ecrivainsDb;
+    private final Consumer<List<Email>> publication;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "sync-pipeline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Construit le pipeline.
+     *
+     * @param dbService   Le service utilisé pour enregistrer les e-mails.
+     * @param ecrivainsDb Les autorisations d'écriture en base, partagées entre tous les comptes.
+     * @param publication Reçoit chaque lot d'e-mails enregistrés, depuis un thread du pipeline.
+     */
+    public SyncPipeline(DBService dbService, Semaphore ecrivainsDb, Consumer<List<Email>> publication) {
+        this.dbService = dbService;
+        this.ecrivainsDb = ecrivainsDb;
+        this.publication = publication;
+    }
+
+    /**
+     * Synchronise une tranche de la boîte de réception d'un compte et attend qu'elle
+     * ait entièrement traversé le pipeline.
+     *
+     * @param gmailService Le service Gmail du compte.
+     * @param decalage     Le nombre de messages les plus récents à ignorer.
+     * @param taille       Le nombre maximal de messages à récupérer.
+     * @return Le nombre de messages téléchargés (indice 0) et de nouveaux e-mails enregistrés (indice 1).
+     */
+    public int[] synchroniser(GmailService gmailService, int decalage, int taille) {
+        AtomicInteger ajouts = new AtomicInteger();
+        CompletableFuture<Void> fin = new CompletableFuture<>();
+
+        SubmissionPublisher<Message> telechargement = new SubmissionPublisher<>(executor, CAPACITE);
+        EtapeFlux<Message, Email> analyse = new EtapeFlux<>("analyse", executor, CAPACITE, gmailService::analyserMessage);
+        EtapeFlux<Email, Email> enregistrement = new EtapeFlux<>("enregistrement", executor, CAPACITE, mail -> enregistrer(mail, ajouts));
+        telechargement.subscribe(analyse);
+        analyse.subscribe(enregistrement);
+        enregistrement.subscribe(new Publication(enregistrement, fin));
+
+        int recus = gmailService.telechargerInbox(decalage, taille, telechargement::submit);
+        telechargement.close();
+        fin.join();
+        return new int[] {recus, ajouts.get()};
+    }
+
+    /**
+     * Arrête les threads du pipeline.
+     */
+    public void arreter() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Étage d'enregistrement : sauvegarde l'e-mail s'il est nouveau et le relit depuis la base
+     * pour connaître son identifiant et le dossier choisi par le trigger de tri.
+     *
+     * @param mail   L'e-mail analysé.
+     * @param ajouts Le compteur de nouveaux e-mails de la tranche.
+     * @return L'e-mail tel qu'enregistré, ou {@code null} s'il existait déjà.
+     */
+    private Email enregistrer(Email mail, AtomicInteger ajouts) {
+        ecrivainsDb.acquireUninterruptibly();
+        try {
+            if (dbService.emailExiste(mail.getCompte(), mail.getExpediteur(), mail.getSujet(), mail.getDate())) {
+                return null;
+            }
+            int id = dbService.saveEmail(mail);
+            if (id < 0) {
+                return null;
+            }
+            ajouts.incrementAndGet();
+            return dbService.getEmail(id);
+        } finally {
+            ecrivainsDb.release();
+        }
+    }
+
+    /**
+     * Dernier étage : regroupe les e-mails enregistrés en petits lots. Un lot est publié
+     * dès que l'étage précédent n'a plus rien en attente, ou lorsqu'il atteint
+     * {@value #TAILLE_LOT} e-mails.
+     */
+    private class Publication implements Flow.Subscriber<Email> {
+        private final SubmissionPublisher<Email> amont;
+        private final CompletableFuture<Void> fin;
+        private final List<Email> lot = new ArrayList<>();
+        private Flow.Subscription abonnement;
+
+        Publication(SubmissionPublisher<Email> amont, CompletableFuture<Void> fin) {
+            this.amont = amont;
+            this.fin = fin;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.abonnement = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Email email) {
+            lot.add(email);
+            // L'élément en cours de livraison compte encore dans le retard de l'étage amont.
+            if (lot.size() >= TAILLE_LOT || amont.estimateMaximumLag() <= 1) {
+                publier();
+            }
+            abonnement.request(1);
+        }
+
+        @Override
+        public void onError(Throwable erreur) {
+            System.err.println("Erreur dans le pipeline de synchronisation : " + erreur.getMessage());
+            publier();
+            fin.complete(null);
+        }
+
+        @Override
+        public void onComplete() {
+            publier();
+            fin.complete(null);
+        }
+
+        private void publier() {
+            if (lot.isEmpty()) {
+                return;
+            }
+            List<Email> envoi = new ArrayList<>(lot);
+            lot.clear();
+            try {
+                publication.accept(envoi);
+            } catch (RuntimeException e) {
+                System.err.println("Erreur lors de la publication des emails : " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.monprojet;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Planifie la synchronisation IMAP de tous les comptes connectés.
+ * <p>
+ * Un seul planificateur est partagé par l'application. Il borne le nombre de
+ * téléchargements IMAP simultanés (un par thread de travail) et le nombre de threads
+ * qui écrivent en même temps dans la base de données. Chaque compte garde une seule
+ * connexion IMAP, ouverte à sa première synchronisation et réutilisée ensuite : il y a
+ * donc autant de connexions ouvertes que de comptes.
+ * Chaque synchronisation est découpée en tranches de {@value #TAILLE_TRANCHE} messages,
+ * et les comptes en attente sont servis à tour de rôle : une grosse boîte ne peut donc
+ * pas affamer les autres.
+ * </p>
+ * <p>
+ * La boîte de réception de chaque compte est aussi interrogée en arrière-plan.
+ * L'intervalle entre deux interrogations s'adapte au trafic : il est divisé par deux
+ * lorsque de nouveaux messages arrivent et allongé lorsque la boîte reste calme,
+ * avec une part d'aléa pour que les comptes ne se synchronisent pas tous au même instant.
+ * Une demande manuelle faite pendant une synchronisation est fusionnée avec celle-ci :
+ * il n'y a jamais qu'un seul écrivain par dossier synchronisé.
+ * </p>
+ * <p>
+ * Chaque tranche traverse un {@link SyncPipeline} : les nouveaux e-mails sont publiés
+ * aux écouteurs par petits lots, dès qu'ils sont enregistrés.
+ * </p>
+ */
+public class SyncScheduler {
+
+    /**
+     * Nombre maximal de tranches téléchargées simultanément, tous comptes confondus.
+     * Ne borne pas les connexions : chaque compte garde la sienne ouverte.
+     */
+    private static final int MAX_TELECHARGEMENTS_IMAP = 4;
+
+    /**
+     * Nombre maximal de threads écrivant simultanément dans la base de données.
+     */
+    private static final int MAX_ECRIVAINS_DB = 2;
+
+    /**
+     * Nombre de messages récupérés par tranche.
+     */
+    private static final int TAILLE_TRANCHE = 20;
+
+    /**
+     * Nombre maximal de tranches parcourues lors d'une même synchronisation.
+     */
+    private static final int MAX_TRANCHES = 10;
+
+    /**
+     * Intervalle d'interrogation minimal, en secondes, lorsque les messages arrivent vite.
+     */
+    private static final long INTERVALLE_MIN = 30;
+
+    /**
+     * Intervalle d'interrogation maximal, en secondes, lorsque la boîte reste calme.
+     */
+    private static final long INTERVALLE_MAX = 15 * 60;
+
+    /**
+     * Intervalle d'interrogation initial, en secondes.
+     */
+    private static final long INTERVALLE_INITIAL = 60;
+
+    /**
+     * Part d'aléa appliquée à chaque intervalle (±20 %).
+     */
+    private static final double ALEA = 0.2;
+
+    private final SyncPipeline pipeline;
+    private final List<Consumer<List<Email>>> ecouteurs = new CopyOnWriteArrayList<>();
+    private final Map<String, EtatCompte> comptes = new ConcurrentHashMap<>();
+    private final Deque<EtatCompte> fileAttente = new ArrayDeque<>();
+    private final Semaphore ecrivainsDb = new Semaphore(MAX_ECRIVAINS_DB, true);
+    private final ExecutorService executor = Executors.newFixedThreadPool(MAX_TELECHARGEMENTS_IMAP, r -> {
+        Thread t = new Thread(r, "sync-imap");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService minuteur = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sync-minuteur");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Construit le planificateur de synchronisation.
+     *
+     * @param dbService Le service utilisé pour enregistrer les e-mails récupérés.
+     */
+    public SyncScheduler(DBService dbService) {
+        this.pipeline = new SyncPipeline(dbService, ecrivainsDb, this::publier);
+    }
+
+    /**
+     * Enregistre un compte auprès du planificateur et démarre son interrogation en arrière-plan.
+     *
+     * @param gmailService Le service Gmail propre à ce compte.
+     */
+    public void ajouterCompte(GmailService gmailService) {
+        EtatCompte etat = new EtatCompte(gmailService);
+        if (comptes.putIfAbsent(gmailService.getUserEmail(), etat) == null) {
+            synchronized (this) {
+                planifierProchaineSync(etat);
+            }
+        }
+    }
+
+    /**
+     * Ajoute un écouteur prévenu à chaque lot de nouveaux e-mails enregistrés.
+     * <p>
+     * L'écouteur est appelé depuis un thread de synchronisation avec les e-mails tels
+     * qu'ils sont stockés (identifiant et dossier compris).
+     * </p>
+     *
+     * @param ecouteur L'écouteur à ajouter.
+     */
+    public void ajouterEcouteur(Consumer<List<Email>> ecouteur) {
+        ecouteurs.add(ecouteur);
+    }
+
+    /**
+     * Arrête les interrogations en arrière-plan et les threads de synchronisation,
+     * puis ferme les connexions IMAP des comptes.
+     */
+    public void arreter() {
+        minuteur.shutdownNow();
+        executor.shutdownNow();
+        pipeline.arreter();
+        for (EtatCompte etat : comptes.values()) {
+            etat.gmailService.fermer();
+        }
+    }
+
+    /**
+     * Transmet un lot de nouveaux e-mails à tous les écouteurs.
+     *
+     * @param lot Les e-mails enregistrés.
+     */
+    private void publier(List<Email> lot) {
+        for (Consumer<List<Email>> ecouteur : ecouteurs) {
+            ecouteur.accept(lot);
+        }
+    }
+
+    /**
+     * Demande la synchronisation de la boîte de réception d'un compte.
+     * <p>
+     * Si une synchronisation est déjà en cours pour ce compte, la demande est
+     * fusionnée avec celle-ci et le même résultat est renvoyé. Sinon, l'interrogation
+     * planifiée est annulée et sera replanifiée à la fin de cette synchronisation.
+     * </p>
+     *
+     * @param compte L'adresse du compte à synchroniser.
+     * @return Le nombre de nouveaux e-mails enregistrés, disponible à la fin de la synchronisation.
+     */
+    public CompletableFuture<Integer> demanderSync(String compte) {
+        EtatCompte etat = comptes.get(compte);
+        if (etat == null) {
+            return CompletableFuture.completedFuture(0);
+        }
+        synchronized (this) {
+            if (etat.resultat == null) {
+                if (etat.prochaine != null) {
+                    etat.prochaine.cancel(false);
+                    etat.prochaine = null;
+                }
+                etat.resultat = new CompletableFuture<>();
+                etat.decalage = 0;
+                etat.tranches = 0;
+                etat.ajouts = 0;
+                fileAttente.addLast(etat);
+                executor.execute(this::executerTour);
+            }
+            return etat.resultat;
+        }
+    }
+
+    /**
+     * Exécute une tranche pour le compte en tête de file, puis le remet en fin de file
+     * s'il lui reste des messages à parcourir.
+     */
+    private void executerTour() {
+        EtatCompte etat;
+        synchronized (this) {
+            etat = fileAttente.pollFirst();
+        }
+        if (etat == null) {
+            return;
+        }
+
+        boolean continuer = false;
+        try {
+            continuer = synchroniserTranche(etat);
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la synchronisation de " + etat.gmailService.getUserEmail() + " : " + e.getMessage());
+        }
+
+        CompletableFuture<Integer> resultat;
+        int ajouts;
+        synchronized (this) {
+            if (continuer) {
+                fileAttente.addLast(etat);
+                executor.execute(this::executerTour);
+                return;
+            }
+            resultat = etat.resultat;
+            ajouts = etat.ajouts;
+            etat.resultat = null;
+            adapterIntervalle(etat);
+            planifierProchaineSync(etat);
+        }
+
+        resultat.complete(ajouts);
+    }
+
+    /**
+     * Ajuste l'intervalle d'interrogation d'un compte selon le résultat de sa dernière synchronisation.
+     *
+     * @param etat L'état de synchronisation du compte.
+     */
+    private void adapterIntervalle(EtatCompte etat) {
+        if (etat.ajouts > 0) {
+            etat.intervalle = Math.max(INTERVALLE_MIN, etat.intervalle / 2);
+        } else {
+            etat.intervalle = Math.min(INTERVALLE_MAX, etat.intervalle * 3 / 2);
+        }
+    }
+
+    /**
+     * Planifie la prochaine interrogation en arrière-plan d'un compte, avec une part d'aléa.
+     *
+     * @param etat L'état de synchronisation du compte.
+     */
+    private void planifierProchaineSync(EtatCompte etat) {
+        if (minuteur.isShutdown()) {
+            return;
+        }
+        double facteur = 1 + ThreadLocalRandom.current().nextDouble(-ALEA, ALEA);
+        long delai = (long) (etat.intervalle * 1000 * facteur);
+        String compte = etat.gmailService.getUserEmail();
+        etat.prochaine = minuteur.schedule(() -> demanderSync(compte), delai, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fait passer une tranche de messages d'un compte dans le pipeline de synchronisation.
+     *
+     * @param etat L'état de synchronisation du compte.
+     * @return {@code true} si la tranche ne contenait que des nouveaux messages et qu'il faut continuer.
+     */
+    private boolean synchroniserTranche(EtatCompte etat) {
+        int[] resultat = pipeline.synchroniser(etat.gmailService, etat.decalage, TAILLE_TRANCHE);
+        int recus = resultat[0];
+        int ajoutsTranche = resultat[1];
+
+        etat.ajouts += ajoutsTranche;
+        etat.decalage += recus;
+        etat.tranches++;
+        return recus == TAILLE_TRANCHE && ajoutsTranche == recus && etat.tranches < MAX_TRANCHES;
+    }
+
+    /**
+     * État de synchronisation d'un compte. Les champs sont protégés par le verrou du planificateur,
+     * sauf pendant l'exécution d'une tranche où seul le thread de travail y accède.
+     * Tant que {@code resultat} n'est pas nul, une synchronisation est en file ou en cours
+     * et aucune autre ne peut démarrer pour ce compte.
+     */
+    private static class EtatCompte {
+        private final GmailService gmailService;
+        private CompletableFuture<Integer> resultat;
+        private ScheduledFuture<?> prochaine;
+        private long intervalle = INTERVALLE_INITIAL;
+        private int decalage;
+        private int tranches;
+        private int ajouts;
+
+        EtatCompte(GmailService gmailService) {
+            this.gmailService = gmailService;
+        }
+    }
+}
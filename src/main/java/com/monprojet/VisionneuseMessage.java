@@ -0,0 +1,259 @@
+package com.monprojet;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.TextField;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Affiche le corps d'un e-mail ligne par ligne, quelle que soit sa taille.
+ * <p>
+ * Le corps est représenté par un {@link CorpsMessage} et affiché dans une {@link ListView}
+ * dont chaque élément est un numéro de ligne : seules les lignes visibles sont mises en
+ * forme, et seuls les morceaux de texte correspondants sont en mémoire. Les lectures en
+ * base (morceaux, index des lignes, recherche) ont lieu sur un thread dédié ; la liste
+ * s'allonge au fur et à mesure que l'index progresse.
+ * </p>
+ */
+public class VisionneuseMessage extends VBox {
+
+    /**
+     * Nombre de lignes restant à afficher en dessous duquel l'index est prolongé.
+     */
+    private static final int MARGE_INDEXATION = 200;
+
+    private static final KeyCombination COPIER = new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN);
+
+    private final EmailCache emailCache;
+    private final ExecutorService chargement = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "visionneuse");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ListView<Integer> vue = new ListView<>();
+    private final TextField champRecherche = new TextField();
+    private final Label lblRecherche = new Label();
+
+    private CorpsMessage corps;
+    private Lignes lignes;
+    private boolean indexationDemandee;
+    private boolean rechargementDemande;
+    private String dernierTerme = "";
+    private long derniereOccurrence = -1;
+
+    /**
+     * Construit la visionneuse.
+     *
+     * @param emailCache Le cache des dossiers, qui fournit les morceaux de corps.
+     */
+    public VisionneuseMessage(EmailCache emailCache) {
+        super(5);
+        this.emailCache = emailCache;
+
+        champRecherche.setPromptText("Rechercher dans le message...");
+        champRecherche.setOnAction(e -> chercherSuivant());
+        Button btnSuivant = new Button("Suivant");
+        btnSuivant.setOnAction(e -> chercherSuivant());
+        HBox barreRecherche = new HBox(5, champRecherche, btnSuivant, lblRecherche);
+        HBox.setHgrow(champRecherche, Priority.ALWAYS);
+        barreRecherche.setPadding(new Insets(0, 0, 5, 0));
+
+        vue.setFixedCellSize(20);
+        vue.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        vue.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(Integer index, boolean vide) {
+                super.updateItem(index, vide);
+                if (vide || index == null || corps == null) {
+                    setText(null);
+                    return;
+                }
+                String texte = corps.ligne(index);
+                setText(texte != null ? texte : "");
+                if (texte == null) {
+                    recharger(corps, index);
+                }
+                if (index >= lignes.size() - MARGE_INDEXATION && !corps.estIndexe()) {
+                    indexer(corps);
+                }
+            }
+        });
+        vue.setOnKeyPressed(e -> {
+            if (COPIER.match(e)) copierSelection();
+        });
+        VBox.setVgrow(vue, Priority.ALWAYS);
+
+        getChildren().addAll(barreRecherche, vue);
+    }
+
+    /**
+     * Affiche le corps d'un e-mail. Seul le premier morceau est lu avant l'affichage.
+     *
+     * @param email L'e-mail à afficher, tel que renvoyé par {@link EmailCache#getEmails(String, String)}.
+     */
+    public void afficher(Email email) {
+        if (corps != null) {
+            corps.fermer();
+        }
+        corps = new CorpsMessage((debut, longueur) -> emailCache.lireMessage(email, debut, longueur), email.getTailleMessage());
+        lignes = new Lignes();
+        vue.setItems(lignes);
+        indexationDemandee = false;
+        rechargementDemande = false;
+        derniereOccurrence = -1;
+        lblRecherche.setText("");
+        indexer(corps);
+    }
+
+    /**
+     * Prolonge l'index des lignes d'un morceau, en arrière-plan.
+     */
+    private void indexer(CorpsMessage c) {
+        if (indexationDemandee) return;
+        indexationDemandee = true;
+        chargement.execute(() -> {
+            c.indexerSuite();
+            Platform.runLater(() -> {
+                if (c != corps) return;
+                indexationDemandee = false;
+                publier();
+            });
+        });
+    }
+
+    /**
+     * Relit en arrière-plan un morceau évincé du cache, puis redessine les lignes visibles.
+     */
+    private void recharger(CorpsMessage c, int index) {
+        if (rechargementDemande) return;
+        rechargementDemande = true;
+        chargement.execute(() -> {
+            c.chargerLigne(index);
+            Platform.runLater(() -> {
+                if (c != corps) return;
+                rechargementDemande = false;
+                vue.refresh();
+            });
+        });
+    }
+
+    /**
+     * Agrandit la liste jusqu'au nombre de lignes indexées.
+     */
+    private void publier() {
+        lignes.agrandir(corps.getNbLignes());
+    }
+
+    /**
+     * Cherche l'occurrence suivante du terme saisi, en reprenant au début du message si
+     * nécessaire, puis sélectionne la ligne qui la contient.
+     */
+    private void chercherSuivant() {
+        String terme = champRecherche.getText();
+        if (terme.isEmpty() || corps == null) return;
+
+        CorpsMessage c = corps;
+        long depuis;
+        if (terme.equals(dernierTerme) && derniereOccurrence >= 0) {
+            depuis = derniereOccurrence + 1;
+        } else {
+            int selection = vue.getSelectionModel().getSelectedIndex();
+            depuis = selection >= 0 ? c.debutLigne(selection) : 0;
+        }
+        dernierTerme = terme;
+        lblRecherche.setText("Recherche...");
+
+        chargement.execute(() -> {
+            long position = c.chercher(terme, depuis);
+            boolean reprise = false;
+            if (position < 0 && depuis > 0) {
+                position = c.chercher(terme, 0);
+                reprise = position >= 0;
+            }
+            int ligne = position >= 0 ? c.ligneDe(position) : -1;
+
+            long trouvee = position;
+            boolean repriseAuDebut = reprise;
+            Platform.runLater(() -> {
+                if (c != corps) return;
+                publier();
+                if (trouvee < 0) {
+                    lblRecherche.setText("Introuvable");
+                    return;
+                }
+                derniereOccurrence = trouvee;
+                lblRecherche.setText(repriseAuDebut ? "Reprise au début" : "");
+                vue.getSelectionModel().clearAndSelect(ligne);
+                vue.scrollTo(Math.max(0, ligne - 3));
+            });
+        });
+    }
+
+    /**
+     * Copie les lignes sélectionnées dans le presse-papiers.
+     */
+    private void copierSelection() {
+        List<Integer> selection = new ArrayList<>(vue.getSelectionModel().getSelectedIndices());
+        selection.sort(null);
+        StringBuilder texte = new StringBuilder();
+        for (int index : selection) {
+            String ligne = corps.ligne(index);
+            if (texte.length() > 0) texte.append('\n');
+            texte.append(ligne != null ? ligne : "");
+        }
+        ClipboardContent contenu = new ClipboardContent();
+        contenu.putString(texte.toString());
+        Clipboard.getSystemClipboard().setContent(contenu);
+    }
+
+    /**
+     * Liste des numéros de ligne 0 à n-1, sans stockage : seule sa taille est conservée.
+     */
+    private static class Lignes extends ObservableListBase<Integer> {
+        private int taille;
+
+        /**
+         * Agrandit la liste. Doit être appelée depuis le thread JavaFX.
+         *
+         * @param nouvelleTaille Le nombre de lignes disponibles.
+         */
+        void agrandir(int nouvelleTaille) {
+            if (nouvelleTaille <= taille) return;
+            int ancienne = taille;
+            taille = nouvelleTaille;
+            beginChange();
+            nextAdd(ancienne, nouvelleTaille);
+            endChange();
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= taille) throw new IndexOutOfBoundsException(index);
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return taille;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.monprojet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mesure {@link HtmlToText#convertir(String)} face à l'ancien retrait des balises par
+ * expression régulière ({@code html.replaceAll("<[^>]*>", "")}).
+ * <p>
+ * Sans argument, les entrées sont synthétiques : une lettre d'information chargée en
+ * tableaux (le cas courant) et une suite de balises jamais fermées (le cas quadratique pour
+ * l'expression régulière). Des fichiers HTML réels peuvent être passés en arguments.
+ * </p>
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes com.monprojet.HtmlToTextBenchmark [fichier.html ...]
+ * </pre>
+ */
+public class HtmlToTextBenchmark {
+
+    private static final int ECHAUFFEMENT = 20;
+    private static final int MESURES = 30;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> entrees = new LinkedHashMap<>();
+        if (args.length == 0) {
+            entrees.put("lettre d'information (tableaux)", lettreInformation(6200));
+            entrees.put("balises non fermées", "<a".repeat(10_000));
+        } else {
+            for (String fichier : args) {
+                entrees.put(fichier, Files.readString(Path.of(fichier), StandardCharsets.UTF_8));
+            }
+        }
+
+        for (Map.Entry<String, String> entree : entrees.entrySet()) {
+            String html = entree.getValue();
+            double convertisseur = mediane(() -> HtmlToText.convertir(html));
+            double regex = mediane(() -> html.replaceAll("<[^>]*>", ""));
+            System.out.printf("%-35s %8d car.  HtmlToText %8.2f ms   regex %8.2f ms%n",
+                    entree.getKey(), html.length(), convertisseur, regex);
+        }
+    }
+
+    /**
+     * @return La durée médiane d'exécution, en millisecondes, après échauffement.
+     */
+    private static double mediane(Runnable tache) {
+        for (int i = 0; i < ECHAUFFEMENT; i++) {
+            tache.run();
+        }
+        double[] durees = new double[MESURES];
+        for (int i = 0; i < MESURES; i++) {
+            long debut = System.nanoTime();
+            tache.run();
+            durees[i] = (System.nanoTime() - debut) / 1e6;
+        }
+        Arrays.sort(durees);
+        return durees[MESURES / 2];
+    }
+
+    /**
+     * Construit une lettre d'information typique : tableaux imbriqués, styles en ligne,
+     * liens, entités et commentaires conditionnels d'Outlook.
+     */
+    private static String lettreInformation(int articles) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><style>td{padding:0}</style>"
+                + "<?xml:namespace prefix=o ?></head><body><!--[if mso]><table><tr><td><![endif]-->");
+        for (int i = 0; i < articles; i++) {
+            html.append("<table role=\"presentation\" width=\"100%\" cellpadding=\"0\" style=\"border:0;\"><tr>")
+                .append("<td class=\"article\" style=\"font-family:Arial,sans-serif;font-size:14px;\">")
+                .append("<h2>Article n&deg;").append(i).append(" &ndash; les nouveaut&eacute;s</h2>")
+                .append("<p>Lorem ipsum dolor sit amet, <b>consectetur</b> adipiscing elit. ")
+                .append("Voir <a href=\"https://exemple.com/a/").append(i).append("?utm_source=lettre\">le d&eacute;tail</a>.</p>")
+                .append("<img src=\"https://exemple.com/i/").append(i).append(".png\" alt=\"\" width=\"600\"/>")
+                .append("</td></tr></table>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+}